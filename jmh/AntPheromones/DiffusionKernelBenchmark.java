@@ -0,0 +1,66 @@
+package AntPheromones;
+
+/**
+DiffusionKernelBenchmark
+
+JMH benchmark of one PheromoneField.diffuse() with each kernel
+(0=scalar, 1=row, 2=Vector API) on square fields 100, 1000 and 4000
+cells on a side, single threaded, whole field active.  The field starts
+with every cell holding a random value, so no cell is skipped and
+the values don't underflow to 0 during the run.
+
+Run with jmh/run-jmh.sh (which adds the Vector API module, so kernel 2
+isn't just kernel 1 again).
+
+*/
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State( Scope.Thread )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 10, time = 1 )
+@Fork( value = 2, jvmArgsAppend = { "--add-modules", "jdk.incubator.vector" } )
+public class DiffusionKernelBenchmark {
+
+	@Param( { "100", "1000", "4000" } )
+	public int size;
+
+	@Param( { "0", "1", "2" } )
+	public int kernel;
+
+	PheromoneField field;
+
+	@Setup( Level.Trial )
+	public void setup () {
+		field = new PheromoneField( 0.90, 1.00, size, size );
+		field.setKernel( kernel );
+		Random r = new Random( 17 );
+		for ( int y = 0; y < size; ++y )
+			for ( int x = 0; x < size; ++x )
+				field.putValueAt( x, y, 1000.0 + 1000.0 * r.nextDouble() );
+		field.update();
+	}
+
+	@Benchmark
+	public PheromoneField diffuse () {
+		field.diffuse();
+		return field;
+	}
+
+}
@@ -0,0 +1,22 @@
+#!/bin/sh
+# compile and run the JMH benchmarks in jmh/, eg
+#    jmh/run-jmh.sh "/path/to/cscs530.jar:/path/to/jmh-jars/*" -p size=1000
+# The first argument is the classpath of the model's libraries and of
+# JMH (jmh-core, jmh-generator-annprocess, jopt-simple, commons-math3);
+# the rest are passed to JMH.
+
+LIBS=$1
+shift
+JMHDIR=$(cd $(dirname $0) && pwd)
+PROJECTDIR=$(dirname $JMHDIR)
+OUT=${TMPDIR:-/tmp}/AntPheromones-jmh.$$
+VECTOR="--add-modules jdk.incubator.vector"
+
+mkdir -p $OUT
+javac $VECTOR -d $OUT -cp "$LIBS" \
+	$PROJECTDIR/src/AntPheromones/*.java $PROJECTDIR/src-vector/AntPheromones/*.java \
+	$JMHDIR/AntPheromones/*.java || exit 1
+java $VECTOR -cp "$OUT:$LIBS" org.openjdk.jmh.Main DiffusionKernelBenchmark "$@"
+status=$?
+rm -rf $OUT
+exit $status
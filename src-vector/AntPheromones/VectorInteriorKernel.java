@@ -0,0 +1,57 @@
+package AntPheromones;
+
+/**
+VectorInteriorKernel
+
+PheromoneField's interior loop written with the Vector API (the
+jdk.incubator.vector module, JDK 16 and later), for the vectorKernel.
+Each lane does the same operations in the same order as the scalar
+expression, with no fused multiply-adds, so the results are
+bit-identical to the other kernels.  The cells left over after the
+last full vector are done one at a time.
+
+This is kept out of src/ so the model still builds on JDKs (and with
+build scripts) that don't have the module.  To use it, compile and run
+with the module added, eg
+    javac --add-modules jdk.incubator.vector -d classes \
+          src/AntPheromones/*.java src-vector/AntPheromones/*.java
+    java --add-modules jdk.incubator.vector ... dKern=2
+Without it PheromoneField.setKernel falls back to the rowKernel.
+
+*/
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorSpecies;
+
+public class VectorInteriorKernel implements InteriorKernel {
+
+	static final VectorSpecies<Double> species = DoubleVector.SPECIES_PREFERRED;
+
+	public void diffuseInterior ( double[] src, double[] dst, int row, int up, int down,
+								  int xStart, int xEnd, double k, double e ) {
+		int x = xStart;
+		int upper = xStart + species.loopBound( xEnd - xStart );
+		for ( ; x < upper; x += species.length() ) {
+			DoubleVector orth = DoubleVector.fromArray( species, src, up + x )
+				.add( DoubleVector.fromArray( species, src, down + x ) )
+				.add( DoubleVector.fromArray( species, src, row + x - 1 ) )
+				.add( DoubleVector.fromArray( species, src, row + x + 1 ) );
+			DoubleVector diag = DoubleVector.fromArray( species, src, up + x - 1 )
+				.add( DoubleVector.fromArray( species, src, up + x + 1 ) )
+				.add( DoubleVector.fromArray( species, src, down + x - 1 ) )
+				.add( DoubleVector.fromArray( species, src, down + x + 1 ) );
+			DoubleVector v = DoubleVector.fromArray( species, src, row + x );
+			DoubleVector nghAvg = orth.mul( 4.0 ).add( diag ).div( 20.0 );
+			nghAvg.sub( v ).mul( k ).add( v ).mul( e ).intoArray( dst, row + x );
+		}
+		for ( ; x < xEnd; ++x ) {
+			double orth = src[up + x] + src[down + x] + src[row + x - 1] + src[row + x + 1];
+			double diag = src[up + x - 1] + src[up + x + 1]
+						+ src[down + x - 1] + src[down + x + 1];
+			double v = src[row + x];
+			double nghAvg = ( 4.0 * orth + diag ) / 20.0;
+			dst[row + x] = e * ( v + k * ( nghAvg - v ) );
+		}
+	}
+
+}
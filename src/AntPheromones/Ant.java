@@ -3,7 +3,10 @@ package AntPheromones;
 /**
 Ant.java 
 
-A simple Ant object that can move in a GridWorld (a Repast Object2DGrid).
+A simple Ant object that can move in a GridWorld.
+The ant's state (id, x,y, age, weight, live, probRandMove, probDieCenter)
+is stored in the AntPopulation, at this Ant's index, so an Ant is
+just a view onto that for the model, GUI and probes.
 Note it implements the Repast Drawable interface, so that
 it can be displayed via the Repast Object2DDisplay gui object,
 and a ObjectInGrid, so it can be placed and move in that world.
@@ -12,13 +15,10 @@ and a ObjectInGrid, so it can be placed and move in that world.
 
 import java.awt.Color;
 import java.awt.Point;
-import java.util.Vector;
-import java.util.ArrayList;
 import java.awt.BasicStroke;
 
 import uchicago.src.sim.gui.Drawable;
 import uchicago.src.sim.gui.SimGraphics;
-import uchicago.src.sim.space.Diffuse2D;
 import uchicago.src.sim.gui.ColorMap;
 
 
@@ -27,8 +27,11 @@ public class Ant implements ObjectInGrid, Drawable {
     public  static int          	nextId = 0; // to give each an id
 	public  static TorusWorld    	world;  	// where the agents live
 	public  static Model		   	model;      // the model "in charge"
-	public  static Diffuse2D		pSpace;	    // where the pheromone is stored
+	public  static PheromoneField	pSpace;	    // where the pheromone is stored
 	public  static GUIModel		    guiModel = null;   // the gui model "in charge"
+	public  static AntPopulation	population = new AntPopulation( 16 ); // where ant state is stored
+	public  static RandomSource	random = new ColtRandomSource(); // where ants draw from
+	public  static Scratch		scratch = new Scratch( random ); // for step() etc
     // we'll use this to draw a border around the bugs' cells (the f means float)
     public  static BasicStroke      bugEdgeStroke = new BasicStroke( 1.0f );
 	// randomMoveMethod -- how to pick that random cell to move to
@@ -43,34 +46,40 @@ public class Ant implements ObjectInGrid, Drawable {
 	public static final double   colorMapMax =  colorMapSize - 1.0;
 	
 	// instance variables  
-	public int 	   		id;			// unique id number for each ant instance
-	public int 			x, y;		// cache the ant's x,y location
-	public double		weight;		// ant's weight
-	public int			age;		// ant's age in days
-	public boolean		live;		// is it live or dead
-	public  double		probRandMove; // probability it'll  move randomly
-	public  double		probDieCenter; // probability it'll die at center
+	public int			index;		// where this ant's state is in the population
 	public Color		myColor;    // color of this agent
 
+	public int			pickedX, pickedY;	// cell found by the pick*Cell methods
+
+	/**
+	// Scratch
+	// what an ant uses while it steps, kept off the ants themselves:
+	// the source it draws from, and buffers for the tied best cells.
+	// There is one for each thread that steps ants (Ant.scratch, drawing
+	// from Ant.random, for the model's), so once the buffers are big
+	// enough stepping allocates nothing.
+	*/
+	public static class Scratch {
+		public RandomSource	random;
+		public int[]		bestXs = new int[9], bestYs = new int[9];
+		public int[]		maxRows = new int[3];	// rows holding the window max
+
+		public Scratch ( RandomSource r ) { random = r; }
+	}
+
 	// an Ant constructor
 	// note it assigns ID values in sequence as ant's are created.
+	// it also gets an index in the population, with x,y, age etc all 0.
 	public Ant ( ) {
-		id = nextId++;
-		x = 0;		y = 0;
-		weight = 0.0; age = 0;  
-		live = true;
-		probRandMove = 0.0;
+		population.add( this );
+		population.id[index] = nextId++;
+		population.setLive( index, true );
 		setInitialColor();
 	}
 
 	public Ant ( double wt ) {  // required weight parameters
-		id = nextId++;
-		x = 0;		y = 0;
-		age = 0;
-		weight = wt; 
-		live = true; 
-		probRandMove = 0.0;
-		setInitialColor();
+		this();
+		population.weight[index] = wt; 
 	}
 
 	public void setInitialColor () {  // set agents initial color
@@ -81,38 +90,38 @@ public class Ant implements ObjectInGrid, Drawable {
 	////////////////////////////////////////////////////////////////////////////
 	// setters and getters
 	//
-	public int getId() {  return id; }
-	public int getX() { return x; }
-	public void setX( int i ) { x = i; }
-	public int getY() { return y; }
-	public void setY( int i ) { y = i; }
+	public int getId() {  return population.id[index]; }
+	public int getX() { return population.x[index]; }
+	public void setX( int i ) { population.x[index] = i; }
+	public int getY() { return population.y[index]; }
+	public void setY( int i ) { population.y[index] = i; }
 
-	public double getWeight() { return weight; }
-	public void setWeight( double w ) { weight = w; }
-	public int getAge() { return age; }
-	public void setAge( int a ) { age = a; }
-	public boolean getLive() { return live; }
-	public void setLive( boolean l ) { live = l; }
+	public double getWeight() { return population.weight[index]; }
+	public void setWeight( double w ) { population.weight[index] = w; }
+	public int getAge() { return population.age[index]; }
+	public void setAge( int a ) { population.age[index] = a; }
+	public boolean getLive() { return population.isLive( index ); }
+	public void setLive( boolean l ) { population.setLive( index, l ); }
 
 
-	public double getProbRandMove() { return probRandMove; }
+	public double getProbRandMove() { return population.probRandMove[index]; }
 	// Note: setProbRandMove also sets the color!
 	public void setProbRandMove( double d ) { 
 		if ( d < 0.0 || d > 1.0 ) 
 			System.err.printf("\nsetProbRandMove(%.3f): out of [0,1]!\n", d );
 		else {
-			probRandMove = d; 
+			population.probRandMove[index] = d; 
 			if ( guiModel != null ) {
 				setBugColorFromPRM();
 			}
 		}
 	}
 	public double getProbDieCenter() {
-		return probDieCenter;
+		return population.probDieCenter[index];
 	}
 
 	public void setProbDieCenter(double probDieCenter) {
-		this.probDieCenter = probDieCenter;
+		population.probDieCenter[index] = probDieCenter;
 	}
 
 	/**
@@ -121,6 +130,7 @@ public class Ant implements ObjectInGrid, Drawable {
 	// anything over 0.5 is the same color - black!
 	 */
 	public void setBugColorFromPRM () {
+		double probRandMove = getProbRandMove();
 	   	int i =  (int) Math.round( 2.0 * probRandMove * colorMapMax );
 		i = (int) Math.min( i, colorMapMax );
 	   	myColor = probRandMoveColorMap.getColor( i );
@@ -156,7 +166,9 @@ public class Ant implements ObjectInGrid, Drawable {
 	public static void setWorld( TorusWorld w ) {	world = w; }
 	public static void setModel( Model m ) { model = m; }
 	public static void resetNextId() { nextId = 0; }  // call when we reset the model
-	public static void setPSpace( Diffuse2D space ) {
+	public static void setPopulation( AntPopulation p ) { population = p; }
+	public static void setRandomSource( RandomSource r ) { random = r; scratch.random = r; }
+	public static void setPSpace( PheromoneField space ) {
 		pSpace = space;
 	}
 	/**
@@ -186,10 +198,8 @@ public class Ant implements ObjectInGrid, Drawable {
 	}
 
 	// return the number of neighbors the bug has, at distance d
-	@SuppressWarnings("unchecked")
 	public int getNumberOfNeighbors( int d ) {
-		Vector<Object> nbors = (Vector<Object>)world.getMooreNeighbors( x, y, d, d, false );
-		return nbors.size();
+		return world.countMooreNeighbors( getX(), getY(), d, d );
 	}
 
 	/**
@@ -200,43 +210,91 @@ public class Ant implements ObjectInGrid, Drawable {
 	// - check one randomly selected open neighbor cell, and
 	//   if its got more pheromone than where the ant is now, move there
 	// - otherwise call makeRandomMove() method.
+	// step(s) draws from s.random, with s's buffers.
 	*/
 	public boolean step () {
-		int neighborhoodRadius = 1; 			 // how far do i look.
+		return step( scratch );
+	}
+
+	public boolean step ( Scratch s ) {
+		int neighborhoodRadius = model.getSenseRadius();  // how far do i look.
 		boolean moved = false;  // not moved this step so far
 
 		if ( model.getRDebug() > 0 ) 
 			System.err.printf( "   --Ant-step() for id=%d at x,y=%d,%d.\n",
-						   id, x, y );
+						   getId(), getX(), getY() );
 
-		amIStillAlive();
-		
-		if ( !live )  // if it died
-			return live;    	 // return its live value (false!)
+		if ( !amIStillAlive( s ) )  // if it died
+			return false;    	 // return its live value (false!)
 		
 		// see if we move randomly...
-		if ( probRandMove > Model.getUniformDoubleFromTo( 0.0, 1.0 ) ) {
-			Point pt = findRandomOpenNeighborCell ( );
-            if ( pt != null ) { 
-                moved = world.moveObjectTo( this, (int) pt.getX(), (int) pt.getY() );
+		if ( getProbRandMove() > s.random.nextDouble() ) {
+            if ( pickRandomOpenNeighborCell ( s ) ) { 
+                moved = world.moveObjectTo( this, pickedX, pickedY );
 				if ( moved && model.getRDebug() > 1 ) 
-					System.out.printf("     -- moved to random cell %d,%d.\n",x,y);
+					System.out.printf("     -- moved to random cell %d,%d.\n",getX(),getY());
 			}
 		}
 
 		else {  
-			moved = tryMoveToMorePheromone( neighborhoodRadius );
+			moved = tryMoveToMorePheromone( neighborhoodRadius, s );
 		}
 
 		if ( !moved )
-			moved = makeRandomMove();
+			moved = makeRandomMove( s );
 
 		if ( model.getRDebug() > 1 ) 
 			System.err.printf("      Ant.step() done. moved = %b.\n", moved );
 
-		return live;  // should be true!
+		return getLive();  // should be true!
 	}
 	
+	/**
+	// proposeStep
+	// what step() would do, but against the world as it is now and
+	// without moving: the cell the ant would move to (torus normalized)
+	// is put in pickedX,pickedY, which are its own x,y if it would stay.
+	// Returns false if the ant would die.
+	// Nothing in the world or the population is changed (not even live),
+	// so all the ants can propose at once (see ParallelActivation),
+	// each thread with its own Scratch, its stream set for the ant.
+	*/
+	public boolean proposeStep () {
+		return proposeStep( scratch );
+	}
+
+	public boolean proposeStep ( Scratch s ) {
+		int x = getX(), y = getY();
+
+		// same test as amIStillAlive
+		if ( getProbDieCenter() * model.calcDeathScale( this ) > s.random.nextDouble() )
+			return false;
+
+		if ( getProbRandMove() > s.random.nextDouble() ) {
+			if ( pickRandomOpenNeighborCell( s ) )
+				return true;
+		}
+		else if ( pickMostPheromoneOpenNeighborCell( model.getSenseRadius(), s ) ) {
+			// as in tryMoveToMorePheromone -- moveObjectTo won't take
+			// a cell off the edge (pickedX,pickedY aren't normalized)
+			int newX = pickedX, newY = pickedY;
+			if ( newX >= 0 && newY >= 0 && newX < world.getSizeX() && newY < world.getSizeY()
+				 && pSpace.getValueAt( x, y ) < pSpace.getValueAt( newX, newY ) )
+				return true;
+		}
+
+		// as in makeRandomMove
+		int k = s.random.nextNeighborIndex();
+		int dx = k % 3 - 1, dy = k / 3 - 1;
+		pickedX = world.xnorm( x + dx );
+		pickedY = world.ynorm( y + dy );
+		if ( !world.isOpen( pickedX, pickedY ) ) {
+			pickedX = x;
+			pickedY = y;
+		}
+		return true;
+	}
+
 	/**
 	 * amIStillAlive
 	// calculate bugs chance of dying, based on probDieCenter
@@ -249,27 +307,34 @@ public class Ant implements ObjectInGrid, Drawable {
 	 * @return live value
 	 */
 	public boolean amIStillAlive ( )  {
-		double dtc = model.calcDistanceToSource( this );
-		double probDie = probDieCenter * ( 1.0 - ( dtc / maxDistanceToCenter ));
+		return amIStillAlive( scratch );
+	}
+
+	public boolean amIStillAlive ( Scratch s )  {
+		// the model has 1 - d/D for each cell in a table (see calcDeathScale)
+		double probDie = getProbDieCenter() * model.calcDeathScale( this );
 		
-		if ( probDie > Model.getUniformDoubleFromTo( 0.0, 1.0 ) ) {
-			live = false;
+		if ( probDie > s.random.nextDouble() ) {
+			setLive( false );
 		}
-		return live;
+		return getLive();
 	}
 	
 	public boolean tryMoveToMorePheromone ( int radius ) {
+		return tryMoveToMorePheromone( radius, scratch );
+	}
+
+	public boolean tryMoveToMorePheromone ( int radius, Scratch s ) {
 		boolean moved = false;
 		// try to move to cell with more pheromone
-		Point pt =  findMostPheromoneOpenNeighborCell ( radius );
-		if ( pt != null ) {  // we got one!
-			int newX = (int) pt.getX();
-			int newY = (int) pt.getY();
-			if ( pSpace.getValueAt( x, y ) < pSpace.getValueAt( newX, newY ) ) {
+		if ( pickMostPheromoneOpenNeighborCell ( radius, s ) ) {  // we got one!
+			int newX = pickedX;
+			int newY = pickedY;
+			if ( pSpace.getValueAt( getX(), getY() ) < pSpace.getValueAt( newX, newY ) ) {
 				moved = world.moveObjectTo( this, newX, newY );
 				if ( moved &&  model.getRDebug() > 1 )
 					System.out.printf("     -- moved to better cell at %d,%d.\n",
-									  x, y );
+									  getX(), getY() );
 			}
 		}	
 		return moved;
@@ -280,25 +345,49 @@ public class Ant implements ObjectInGrid, Drawable {
 	// pick random open Moore neighbor cell and return its 
 	// coordinates in a Point,
 	// Return null if no open cell found.
+	// NB: this allocates the Point; step() uses pickRandomOpenNeighborCell.
+	*/
+	public Point findRandomOpenNeighborCell () {
+		if ( pickRandomOpenNeighborCell() )
+			return new Point( pickedX, pickedY );
+		return null;
+	}
+
+	/**
+	// pickRandomOpenNeighborCell
+	// pick random open Moore neighbor cell and put its 
+	// coordinates in pickedX,pickedY.
+	// Return false if no open cell found.
 	// 
 	// NOTE how it picks depends on randomMoveMethod:
 	// 0 - pick at random from open neighbors
 	// 1 - pick the first found of the  open neighbors (biased!)
+	// The open cells come as a bit mask from the world, in the order
+	// getOpenNeighborLocations would list them, so nothing is allocated.
 	*/
-	public Point findRandomOpenNeighborCell () {
-		Point 		openP = null;
-		ArrayList<Point> openPts = world.getOpenNeighborLocations( x, y );
-
-		// now pick a random open point, if any to pick from
-		if ( openPts.size() > 0 ) {
-			if ( randomMoveMethod == 0 ) {
-				openP = openPts.get( Model.getUniformIntFromTo( 0, openPts.size()-1 ) );
-			}
-			else   // randomMoveMethod = 1 is a biased way to do it!
-				openP = openPts.get( 0 );
-		}
+	public boolean pickRandomOpenNeighborCell () {
+		return pickRandomOpenNeighborCell( scratch );
+	}
 
-		return openP;
+	public boolean pickRandomOpenNeighborCell ( Scratch s ) {
+		int x = getX(), y = getY();
+		int mask = world.getOpenNeighborMask( x, y );
+		int numOpen = Integer.bitCount( mask );
+		if ( numOpen == 0 )
+			return false;
+
+		// now pick a random open cell
+		int k = 0;
+		if ( randomMoveMethod == 0 ) 
+			k = s.random.nextIntFromTo( 0, numOpen-1 );
+		// else randomMoveMethod = 1 is a biased way to do it (k = 0)!
+		while ( k-- > 0 )
+			mask &= mask - 1;		// drop lowest set bit
+		int bit = Integer.numberOfTrailingZeros( mask );
+
+		pickedX = world.xnorm( x + bit % 3 - 1 );
+		pickedY = world.ynorm( y + bit / 3 - 1 );
+		return true;
 	}
 	
 
@@ -307,54 +396,147 @@ public class Ant implements ObjectInGrid, Drawable {
 	// look at open neighbor cells (within d), return Point with coordinates
 	// of cell with most pheromone.
 	// Return null if no open cell found.
-	// NB: This assumes world is a TorusWorld, so we normalize x,y values.
-	// NB: pick from ties at random
+	// NB: this allocates the Point; step() uses pickMostPheromoneOpenNeighborCell.
 	*/
-	
 	public Point findMostPheromoneOpenNeighborCell ( int d ) {
-		ArrayList<Point> openPts = new ArrayList<Point>();  // list of open points
+		if ( pickMostPheromoneOpenNeighborCell( d ) )
+			return new Point( pickedX, pickedY );
+		return null;
+	}
+
+	/**
+	// pickMostPheromoneOpenNeighborCell
+	// look at open neighbor cells (within d), put coordinates
+	// of cell with most pheromone into pickedX,pickedY.
+	// Return false if no open cell found.
+	// NB: This assumes world is a TorusWorld, so we normalize x,y values
+	//     to look at cells -- but pickedX,pickedY are NOT normalized.
+	// NB: pick from ties at random
+	// With d > 1 and the model's max filter for radius d, it only looks
+	// for the cells with the window's max, in the rows that hold it, but
+	// lists the ties in the same order as the scan (dx outer, dy inner),
+	// so the same random draw picks the same cell.
+	// The tied cells are kept in the Scratch's bestXs,bestYs buffers (and
+	// the rows in its maxRows), so once those are big enough this
+	// allocates nothing.
+	*/
+	public boolean pickMostPheromoneOpenNeighborCell ( int d ) {
+		return pickMostPheromoneOpenNeighborCell( d, scratch );
+	}
+
+	public boolean pickMostPheromoneOpenNeighborCell ( int d, Scratch s ) {
+		int x = getX(), y = getY();
 		int minx = x - d;
 		int maxx = x + d;
 		int miny = y - d;
 		int maxy = y + d;
+		int maxCells = ( 2 * d + 1 ) * ( 2 * d + 1 );
+		if ( s.bestXs.length < maxCells ) {
+			s.bestXs = new int[maxCells];
+			s.bestYs = new int[maxCells];
+			s.maxRows = new int[2 * d + 1];
+		}
+		int[] bestXs = s.bestXs, bestYs = s.bestYs;
 
 		// look at neighbor cells, get a list of those with the most Pher.
 		// (the list could be just 1 cell of course.)
+		int    numOpenPts = 0;
 		double mostP = -1;  // most P seen so far;  anything is better than -1!
-		for ( int tx = minx; tx <= maxx; ++tx ) {
-			int txnorm = world.xnorm( tx );
+		WindowMaxFilter maxFilter = model.senseMaxFilter;
+		if ( d > 1 && maxFilter != null && maxFilter.radius == d ) {
+			// the model has the max pheromone in each window, and in each
+			// row of it, so only look for the max cells in rows that hold it
+			double m = maxFilter.getWindowMax( x, y );
+			int[] rows = s.maxRows;
+			int numRows = 0;
 			for ( int ty = miny; ty <= maxy; ++ty ) {
-				int tynorm = world.ynorm( ty );
-				if ( world.getObjectAt( txnorm, tynorm ) == null ) { // its open 
-					double p = pSpace.getValueAt( txnorm, tynorm );
-					if ( p >= mostP ) { 		// best or better than best so far
-						if ( p > mostP ) { 		// new best!
-							openPts.clear();  	// get rid of any previous best
-							mostP = p;          // set to new best value
+				if ( maxFilter.getRowMax( x, world.ynorm( ty ) ) == m )
+					rows[numRows++] = ty;
+			}
+			for ( int tx = minx; tx <= maxx; ++tx ) {
+				int txnorm = world.xnorm( tx );
+				for ( int r = 0; r < numRows; ++r ) {
+					int ty = rows[r];
+					int tynorm = world.ynorm( ty );
+					if ( pSpace.getValueAt( txnorm, tynorm ) == m && world.isOpen( txnorm, tynorm ) ) {
+						bestXs[numOpenPts] = tx;   // add to list
+						bestYs[numOpenPts] = ty;
+						++numOpenPts;
+					}
+				}
+			}
+			if ( numOpenPts > 0 )
+				mostP = m;
+			// else every max cell is occupied -- fall back to the scan below
+		}
+		if ( numOpenPts == 0 && d <= world.ghostWidth && world.ghostWidth == pSpace.getGhostWidth() ) {
+			// both have ghost borders as wide as d, so index straight in
+			// (to the fixed point field's chars, if that is what it has)
+			byte[]   occ = world.ghostOccupied;
+			double[] pher = pSpace.getGhostCells();
+			char[]   pherFixed = pSpace.getGhostFixed();
+			double   scale = pherFixed != null ? ( (FixedPointPheromoneField) pSpace ).scale : 1.0;
+			int stride = world.ghostStride;
+			int col = world.ghostIndex( minx, miny );
+			for ( int tx = minx; tx <= maxx; ++tx, ++col ) {
+				int i = col;
+				for ( int ty = miny; ty <= maxy; ++ty, i += stride ) {
+					if ( occ[i] == 0 ) { // its open 
+						double p = pher != null ? pher[i] : pherFixed[i] / scale;
+						if ( p >= mostP ) { 		// best or better than best so far
+							if ( p > mostP ) { 		// new best!
+								numOpenPts = 0;  	// get rid of any previous best
+								mostP = p;          // set to new best value
+							}
+							bestXs[numOpenPts] = tx;   // add to list
+							bestYs[numOpenPts] = ty;
+							++numOpenPts;
+						}
+					}
+				}
+			}
+		}
+		else if ( numOpenPts == 0 ) {
+			for ( int tx = minx; tx <= maxx; ++tx ) {
+				int txnorm = world.xnorm( tx );
+				for ( int ty = miny; ty <= maxy; ++ty ) {
+					int tynorm = world.ynorm( ty );
+					if ( world.isOpen( txnorm, tynorm ) ) { // its open 
+						double p = pSpace.getValueAt( txnorm, tynorm );
+						if ( p >= mostP ) { 		// best or better than best so far
+							if ( p > mostP ) { 		// new best!
+								numOpenPts = 0;  	// get rid of any previous best
+								mostP = p;          // set to new best value
+							}
+							bestXs[numOpenPts] = tx;   // add to list
+							bestYs[numOpenPts] = ty;
+							++numOpenPts;
 						}
-						openPts.add( new Point( tx, ty ) );   // add to list
 					}
 				}
 			}
 		}
 
 		// now pick a random open best point, if any to pick from
-		int    numOpenPts = openPts.size();
-		Point  openP = null;  				// the one we return
+		int pick = -1;						// the one we return
 		if ( numOpenPts == 1 )				// only one to pick!
-			openP = openPts.get( 0 );
+			pick = 0;
 		else if ( numOpenPts > 1 )      	// pick one at random
-			openP = openPts.get( Model.getUniformIntFromTo( 0, numOpenPts-1 ) );
+			pick = s.random.nextIntFromTo( 0, numOpenPts-1 );
+		if ( pick >= 0 ) {
+			pickedX = bestXs[pick];
+			pickedY = bestYs[pick];
+		}
 
 		if ( model.getRDebug() > 2 ) {
-			if ( openP == null ) 
+			if ( pick < 0 ) 
 				System.out.printf( "     -> no open neighbor with more pheromone.\n" );
 			else
-				System.out.printf( "     -> new best@%.0f,%.0f (ph=%.3f vs here=%.3f)\n",
-		   			   openP.getX(), openP.getY(), mostP, pSpace.getValueAt( x, y ) );
+				System.out.printf( "     -> new best@%d,%d (ph=%.3f vs here=%.3f)\n",
+		   			   pickedX, pickedY, mostP, pSpace.getValueAt( x, y ) );
 		}
 
-		return openP;
+		return pick >= 0;
 	}	
 	
 	/**
@@ -363,19 +545,22 @@ public class Ant implements ObjectInGrid, Drawable {
 	// - asks the world to move it by the selected amounts (dx,dy)
 	// - checks for error conditions and print appropriate messages.
 	//
-	// NB: Only tries 1K times! 
+	// NB: The Colt source draws dx,dy pairs until they aren't both 0,
+	//     as this always did (and only tries 1K times!); the others
+	//     pick one of the 8 neighbors with one draw.
 	// For Demo, make the ant with ID=0 move to the left (dx=1).
 	*/
 	public boolean makeRandomMove () {
+		return makeRandomMove( scratch );
+	}
+
+	public boolean makeRandomMove ( Scratch s ) {
 		boolean moved = false;  // not moved this step so far
 
 		// get a random amount to move into dx,dy, but not to own cell!
-		int dx = 0, dy = 0, nmTrials = 0, maxTrials = 1024;
-		while ( dx == 0 && dy == 0 && nmTrials < maxTrials ) {
-			dx = Model.getUniformIntFromTo( -1, 1 );  // dx = { -1,0,1 } 
-			dy = Model.getUniformIntFromTo( -1, 1 );  // dy = { -1,0,1 }
-			++nmTrials;
-		}
+		int k = s.random.nextNeighborIndex();
+		int dx = k % 3 - 1;  // dx = { -1,0,1 } 
+		int dy = k / 3 - 1;  // dy = { -1,0,1 }
 
 		if ( model.getRDebug() > 0 ) 
 			System.err.printf( "   - try to move dx,dy = %d,%d\n", dx, dy );
@@ -399,8 +584,8 @@ public class Ant implements ObjectInGrid, Drawable {
 	// return new age value.
 	*/
 	public int incrementAge ( int incAge ) {
-		age = age + incAge;   		
-		return age;
+		population.age[index] += incAge;   		
+		return population.age[index];
 	}
 
 	/**
@@ -410,7 +595,8 @@ public class Ant implements ObjectInGrid, Drawable {
 	*/
 	public void printSelf ( ) {
 		System.out.printf( " - Ant %2d (x,y=%d,%d; live=%b) age %2d, wt %5.2f, prm %.2f, prdc %.2f\n",
-						   id, x, y, live, age, weight, probRandMove, probDieCenter );
+						   getId(), getX(), getY(), getLive(), getAge(), getWeight(),
+						   getProbRandMove(), getProbDieCenter() );
 	}
 
 	/**
@@ -0,0 +1,150 @@
+package AntPheromones;
+
+/**
+AntPopulation
+
+The state of all the ants, stored as a structure of arrays: ant i's
+location is x[i],y[i], its age is age[i], and so on, with bit i of
+live set if it is alive.  The ants are packed into indices 0..size-1,
+so the loops the model does over all the ants each step (aging,
+the stats) read a few contiguous arrays instead of chasing a pointer
+to a separate object per ant.
+
+Each Ant object is just a view onto one index (Ant.index), for the
+parts of the model that work with one ant at a time, the GUI display
+and probes.  When an ant is removed, the last ant is moved into its
+index (and its view told so), so the indices stay dense.
+NB: that means the order of the ants here is NOT the order of the
+model's antList, which is what sets the activation order -- and the
+order the stats are summed in (see Model.calcStats), so they are
+the same to the last bit as when they were summed over the Ants.
+
+*/
+
+import java.util.Arrays;
+
+public class AntPopulation {
+
+	public int			size = 0;		// number of ants, in 0..size-1
+	public int[]		id;
+	public int[]		x, y;
+	public int[]		age;
+	public double[]		weight;
+	public double[]		probRandMove;	// probability it'll  move randomly
+	public double[]		probDieCenter;	// probability it'll die at center
+	public long[]		live;			// bit i set if ant i is alive
+	public Ant[]		views;			// the Ant for each index
+
+	public AntPopulation ( int capacity ) {
+		allocate( Math.max( capacity, 16 ) );
+	}
+
+	public int size () { return size; }
+	public Ant get ( int i ) { return views[i]; }
+
+	public final boolean isLive ( int i ) {
+		return ( live[i >> 6] & ( 1L << i ) ) != 0;
+	}
+	// synchronized, as ants in different tiles can die at once (see TileActivation)
+	public final synchronized void setLive ( int i, boolean b ) {
+		if ( b )
+			live[i >> 6] |= 1L << i;
+		else
+			live[i >> 6] &= ~( 1L << i );
+	}
+
+	/**
+	 * add
+	 * give view the next free index, with all its values 0 (and not live).
+	 * @return the index
+	 */
+	public int add ( Ant view ) {
+		if ( size == views.length )
+			allocate( 2 * size );
+		int i = size++;
+		id[i] = 0;
+		x[i] = 0;
+		y[i] = 0;
+		age[i] = 0;
+		weight[i] = 0.0;
+		probRandMove[i] = 0.0;
+		probDieCenter[i] = 0.0;
+		setLive( i, false );
+		views[i] = view;
+		view.index = i;
+		return i;
+	}
+
+	/**
+	 * ensureCapacity
+	 * make room for capacity ants, so that many can be added without
+	 * growing the arrays again.
+	 */
+	public void ensureCapacity ( int capacity ) {
+		if ( capacity > views.length )
+			allocate( Math.max( capacity, 2 * views.length ) );
+	}
+
+	/**
+	 * remove
+	 * remove the ant, moving the last ant into its index.
+	 * The removed Ant's index is set to -1, so its values can't be used.
+	 */
+	public void remove ( Ant view ) {
+		int i = view.index;
+		if ( i < 0 || i >= size || views[i] != view ) {
+			System.err.printf( "\nAntPopulation: remove of ant not in population!\n" );
+			return;
+		}
+		int last = --size;
+		if ( i != last ) {
+			id[i] = id[last];
+			x[i] = x[last];
+			y[i] = y[last];
+			age[i] = age[last];
+			weight[i] = weight[last];
+			probRandMove[i] = probRandMove[last];
+			probDieCenter[i] = probDieCenter[last];
+			setLive( i, isLive( last ) );
+			views[i] = views[last];
+			views[i].index = i;
+		}
+		setLive( last, false );
+		views[last] = null;
+		view.index = -1;
+	}
+
+	/**
+	 * incrementAges
+	 * add incAge to the age of every ant.
+	 */
+	public void incrementAges ( int incAge ) {
+		for ( int i = 0; i < size; ++i )
+			age[i] += incAge;
+	}
+
+	protected void allocate ( int capacity ) {
+		if ( views == null ) {
+			id = new int[capacity];
+			x = new int[capacity];
+			y = new int[capacity];
+			age = new int[capacity];
+			weight = new double[capacity];
+			probRandMove = new double[capacity];
+			probDieCenter = new double[capacity];
+			live = new long[ ( capacity + 63 ) >> 6 ];
+			views = new Ant[capacity];
+			return;
+		}
+		id = Arrays.copyOf( id, capacity );
+		x = Arrays.copyOf( x, capacity );
+		y = Arrays.copyOf( y, capacity );
+		age = Arrays.copyOf( age, capacity );
+		weight = Arrays.copyOf( weight, capacity );
+		probRandMove = Arrays.copyOf( probRandMove, capacity );
+		probDieCenter = Arrays.copyOf( probDieCenter, capacity );
+		live = Arrays.copyOf( live, ( capacity + 63 ) >> 6 );
+		views = Arrays.copyOf( views, capacity );
+	}
+
+}
@@ -0,0 +1,64 @@
+package AntPheromones;
+
+/**
+CellSet
+
+A set of cell indices (0..numCells-1) that can be picked from at
+random in O(1): the members are kept packed in an array, and a second
+array gives each cell's position in the first (or -1 if it is not a
+member), so add and remove are O(1) too (remove swaps the last member
+into the hole).
+
+The order of the members depends on the order of the adds and removes,
+so picking the k-th member is repeatable for a given history.
+
+*/
+
+public class CellSet {
+
+	protected int[]		members;	// the members, in members[0..size-1]
+	protected int[]		position;	// index of each cell in members, or -1
+	protected int		size = 0;
+
+	public CellSet ( int numCells ) {
+		members = new int[ numCells ];
+		position = new int[ numCells ];
+		java.util.Arrays.fill( position, -1 );
+	}
+
+	public int size () { return size; }
+	public boolean contains ( int cell ) { return position[cell] >= 0; }
+
+	/**
+	 * get
+	 * @return the k-th member, k in 0..size()-1
+	 */
+	public int get ( int k ) { return members[k]; }
+
+	/**
+	 * add
+	 * add cell to the set, if its not there already.
+	 */
+	public void add ( int cell ) {
+		if ( position[cell] >= 0 )
+			return;
+		position[cell] = size;
+		members[size++] = cell;
+	}
+
+	/**
+	 * remove
+	 * remove cell from the set, if its there, moving the last member
+	 * into its place.
+	 */
+	public void remove ( int cell ) {
+		int p = position[cell];
+		if ( p < 0 )
+			return;
+		int last = members[--size];
+		members[p] = last;
+		position[last] = p;
+		position[cell] = -1;
+	}
+
+}
@@ -0,0 +1,57 @@
+package AntPheromones;
+
+/**
+ColtRandomSource
+
+The RandomSource that draws from the Repast/Colt generators that
+ModelParameters seeds (uchicago.src.sim.util.Random.uniform and normal),
+through the same calls the model has always made, so runs with it are
+the same as they always were.
+NB: there is only one of each generator, so this can't be used from
+more than one thread, and setStream does nothing.
+
+*/
+
+public class ColtRandomSource implements RandomSource {
+
+	public void setStream ( long key, long streamId ) { }
+
+	public double nextDouble () {
+		return ModelParameters.getUniformDoubleFromTo( 0.0, 1.0 );
+	}
+
+	public double nextDoubleFromTo ( double low, double high ) {
+		return ModelParameters.getUniformDoubleFromTo( low, high );
+	}
+
+	public int nextIntFromTo ( int low, int high ) {
+		return ModelParameters.getUniformIntFromTo( low, high );
+	}
+
+	public long nextLong () {
+		long hi = (long) ( nextDouble() * 0x1.0p32 );
+		long lo = (long) ( nextDouble() * 0x1.0p32 );
+		return ( hi << 32 ) | lo;
+	}
+
+	public double nextNormal ( double mean, double sd ) {
+		return ModelParameters.getNormalDouble( mean, sd );
+	}
+
+	/**
+	 * nextNeighborIndex
+	 * the way Ant.makeRandomMove always did it: draw dx,dy in -1..1
+	 * until they aren't both 0 (giving up after 1024 tries, when it
+	 * returns 4).
+	 */
+	public int nextNeighborIndex () {
+		int dx = 0, dy = 0, nmTrials = 0, maxTrials = 1024;
+		while ( dx == 0 && dy == 0 && nmTrials < maxTrials ) {
+			dx = nextIntFromTo( -1, 1 );
+			dy = nextIntFromTo( -1, 1 );
+			++nmTrials;
+		}
+		return ( dy + 1 ) * 3 + dx + 1;
+	}
+
+}
@@ -0,0 +1,118 @@
+package AntPheromones;
+
+/**
+CounterRandomSource
+
+A counter-based RandomSource: Philox4x32-10 (Salmon et al, "Parallel
+Random Numbers: As Easy as 1, 2, 3", SC11).  Each block of 4 random
+ints is a 128-bit counter made of the block number, streamId and key,
+       ( block, streamId low, key low, streamId high ^ key high )
+put through 10 rounds of multiply/xor keyed by the 64-bit seed.  So a
+draw is a pure function of (seed, key, streamId, draw number): the model
+uses key = step number and streamId = ant id, and an ant gets the same
+draws for a step whichever thread steps it and whatever the others do.
+
+setStream starts a stream at its first block.  Doubles take 2 ints
+(53 bits), bounded ints 1 (scaled, so biased by at most range/2^32),
+and normals come in pairs from Box-Muller.
+
+*/
+
+public class CounterRandomSource implements RandomSource {
+
+	protected static final int mult0 = 0xD2511F53, mult1 = 0xCD9E8D57;
+	protected static final int weyl0 = 0x9E3779B9, weyl1 = 0xBB67AE85;
+
+	protected int		key0, key1;			// the seed
+	protected long		key;				// eg the step number
+	protected long		streamId;			// eg the ant id
+	protected int		block = 0;			// next block of the stream
+	protected int[]		out = new int[4];	// the current block
+	protected int		used = 4;			// ints of it used
+	protected double	spareNormal;		// second of the Box-Muller pair
+	protected boolean	haveSpare = false;
+
+	public CounterRandomSource ( long seed ) {
+		key0 = (int) seed;
+		key1 = (int) ( seed >>> 32 );
+	}
+
+	public void setStream ( long key, long streamId ) {
+		this.key = key;
+		this.streamId = streamId;
+		block = 0;
+		used = 4;
+		haveSpare = false;
+	}
+
+	/**
+	 * philox
+	 * put the 10-round Philox4x32 of counter c0..c3 with key k0,k1 in out.
+	 */
+	public static void philox ( int c0, int c1, int c2, int c3, int k0, int k1, int[] out ) {
+		for ( int r = 0; r < 10; ++r ) {
+			if ( r > 0 ) {
+				k0 += weyl0;
+				k1 += weyl1;
+			}
+			long p0 = ( mult0 & 0xffffffffL ) * ( c0 & 0xffffffffL );
+			long p1 = ( mult1 & 0xffffffffL ) * ( c2 & 0xffffffffL );
+			int n0 = (int) ( p1 >>> 32 ) ^ c1 ^ k0;
+			int n2 = (int) ( p0 >>> 32 ) ^ c3 ^ k1;
+			c1 = (int) p1;
+			c3 = (int) p0;
+			c0 = n0;
+			c2 = n2;
+		}
+		out[0] = c0;
+		out[1] = c1;
+		out[2] = c2;
+		out[3] = c3;
+	}
+
+	protected final int nextInt () {
+		if ( used == 4 ) {
+			philox( block++, (int) streamId, (int) key, (int) ( streamId >>> 32 ) ^ (int) ( key >>> 32 ),
+					key0, key1, out );
+			used = 0;
+		}
+		return out[used++];
+	}
+
+	public double nextDouble () {
+		long a = nextInt() >>> 5, b = nextInt() >>> 6;		// 27 and 26 bits
+		return ( ( a << 26 ) + b ) * 0x1.0p-53;
+	}
+
+	public double nextDoubleFromTo ( double low, double high ) {
+		return low + ( high - low ) * nextDouble();
+	}
+
+	public int nextIntFromTo ( int low, int high ) {
+		long range = (long) high - low + 1;
+		return (int) ( low + ( ( ( nextInt() & 0xffffffffL ) * range ) >>> 32 ) );
+	}
+
+	public long nextLong () {
+		return ( (long) nextInt() << 32 ) | ( nextInt() & 0xffffffffL );
+	}
+
+	public double nextNormal ( double mean, double sd ) {
+		if ( haveSpare ) {
+			haveSpare = false;
+			return mean + sd * spareNormal;
+		}
+		double u1 = 1.0 - nextDouble();		// in (0,1], so the log is finite
+		double u2 = nextDouble();
+		double r = Math.sqrt( -2.0 * Math.log( u1 ) );
+		spareNormal = r * Math.sin( 2.0 * Math.PI * u2 );
+		haveSpare = true;
+		return mean + sd * r * Math.cos( 2.0 * Math.PI * u2 );
+	}
+
+	public int nextNeighborIndex () {
+		int k = nextIntFromTo( 0, 7 );
+		return k < 4 ? k : k + 1;		// skip 4, the cell itself
+	}
+
+}
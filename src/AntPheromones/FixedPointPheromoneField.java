@@ -0,0 +1,230 @@
+package AntPheromones;
+
+/**
+FixedPointPheromoneField
+
+A PheromoneField that stores each cell as a 16-bit unsigned fixed-point
+value (a char) instead of a double, so the two copies take 4 bytes a
+cell instead of 16.  This works because the model never lets a cell
+go over maxPher (see Model.injectExogenousPheromoneAndUpdate), so we can
+map [0,maxValue] onto the full char range [0,65535]:
+       stored = value * scale,   scale = 65535 / maxValue
+With maxPher = 32000 that is a resolution of about 0.5 pheromone units.
+
+diffuse() uses the same rule as PheromoneField, computed in double on
+the stored (scaled) values -- the rule is linear so the scale cancels --
+and then rounds the result back to a char, either:
+* roundNearest    -- deterministic, round half up.  NB: this is LOSSY:
+  each cell's error is always in the same direction for the same
+  value, so the errors don't average out.  With evaporation the field
+  loses about 3% of its total pheromone in 500 steps (eg dK 0.5,
+  eR 0.99); without, it drifts by under 1% either way;
+* roundStochastic -- round up with probability equal to the fraction,
+  so the rounding errors average out instead of always truncating the
+  thin tails of the field.  The random numbers come from a hash of
+  (step number, cell index), so a run is still repeatable and the
+  draws do not touch the model's random number generators.
+Values over maxValue are clamped to it.
+
+This mode is single-threaded and sweeps the whole field: the kernel,
+numThreads and activeRegion settings are ignored, diffuseAndReduce()
+is just diffuse(), and diffuseSteps() does one step at a time.
+
+test/AntPheromones/FixedPointDriftTest checks how far each rounding
+mode drifts from the double field (and Model.checkFixedPointDrift,
+with rDebug > 1, prints it for a run's parameters).
+
+*/
+
+public class FixedPointPheromoneField extends PheromoneField {
+
+	public static final int roundNearest = 0;
+	public static final int roundStochastic = 1;
+
+	public double		maxValue;		// largest value we can store
+	public double		scale;			// stored = value * scale
+	public int			roundingMode;
+
+	protected char[]	readFixed;		// the field as seen by getValueAt
+	protected char[]	writeFixed;		// scratch copy diffuse() writes into
+	protected char[]	ghostFixed;		// padded copy (see PheromoneField.refreshGhosts)
+
+	public FixedPointPheromoneField ( double diffusionK, double evapRate, int sizeX, int sizeY,
+									  double maxValue, int roundingMode ) {
+		super( diffusionK, evapRate, sizeX, sizeY, false );
+		this.maxValue = maxValue;
+		this.scale = 65535.0 / maxValue;
+		this.roundingMode = roundingMode;
+		readFixed = new char[ sizeX * sizeY ];
+		writeFixed = new char[ sizeX * sizeY ];
+	}
+
+	public int getRoundingMode () { return roundingMode; }
+	public void setRoundingMode ( int r ) { roundingMode = r; }
+
+	/**
+	 * setActiveRegion
+	 * not supported for the fixed-point field, which always sweeps all cells.
+	 */
+	public void setActiveRegion ( boolean b ) {
+		if ( b )
+			System.err.printf( "\nFixedPointPheromoneField: no active region tracking!\n" );
+	}
+
+	public double getValueAt ( int x, int y ) {
+		return readFixed[ ynorm( y ) * sizeX + xnorm( x ) ] / scale;
+	}
+
+	public void update () {
+		if ( numPending > 0 )
+			++changes;
+		for ( int p = 0; p < numPending; ++p )
+			readFixed[ pendingIndex[p] ] = toFixed( pendingValue[p] * scale, 0.5 );
+		numPending = 0;
+	}
+
+	/**
+	 * diffuse
+	 * diffuse and evaporate from the read copy into the write copy,
+	 * rounding each new value to fixed point, then swap copies.
+	 */
+	public void diffuse () {
+		char[] src = readFixed, dst = writeFixed;
+		double k = diffusionK, e = evapRate;
+		boolean stochastic = ( roundingMode == roundStochastic );
+		long cellBase = numDiffusions * sizeX * sizeY;
+		for ( int y = 0; y < sizeY; ++y ) {
+			int row = y * sizeX;
+			int up = ( y == 0 ? sizeY - 1 : y - 1 ) * sizeX;
+			int down = ( y == sizeY - 1 ? 0 : y + 1 ) * sizeX;
+			for ( int x = 0; x < sizeX; ++x ) {
+				int left = ( x == 0 ? sizeX - 1 : x - 1 );
+				int right = ( x == sizeX - 1 ? 0 : x + 1 );
+				double orth = (double) src[up + x] + src[down + x] + src[row + left] + src[row + right];
+				double diag = (double) src[up + left] + src[up + right]
+							+ src[down + left] + src[down + right];
+				double v = src[row + x];
+				double nghAvg = ( 4.0 * orth + diag ) / 20.0;
+				double r = stochastic ? uniformHash( cellBase + row + x ) : 0.5;
+				dst[row + x] = toFixed( e * ( v + k * ( nghAvg - v ) ), r );
+			}
+		}
+		char[] t = readFixed;
+		readFixed = writeFixed;
+		writeFixed = t;
+		numPending = 0;
+		++numDiffusions;
+		++changes;
+	}
+
+	/**
+	 * diffuseAndReduce
+	 * no fused pass here -- getTotal() etc just sweep the (small) field.
+	 */
+	public void diffuseAndReduce () {
+		diffuse();
+	}
+
+	/**
+	 * diffuseSteps
+	 * no temporal blocking here, just do the steps one at a time.
+	 */
+	public void diffuseSteps ( int n, int srcX, int srcY, double amount, double maxV ) {
+		for ( int i = 0; i < n; ++i ) {
+			if ( srcX >= 0 ) {
+				double v = amount + getValueAt( srcX, srcY );
+				putValueAt( srcX, srcY, Math.min( v, maxV ) );
+				update();
+			}
+			diffuse();
+		}
+	}
+
+	/**
+	 * toFixed
+	 * @param scaled  a value already multiplied by scale
+	 * @param r       added before truncating: 0.5 rounds to nearest,
+	 *                a uniform [0,1) draw rounds stochastically.
+	 * @return scaled rounded to a char, clamped to [0,65535]
+	 */
+	protected static char toFixed ( double scaled, double r ) {
+		double f = Math.floor( scaled + r );
+		if ( f <= 0.0 )
+			return 0;
+		if ( f >= 65535.0 )
+			return 65535;
+		return (char) f;
+	}
+
+	/**
+	 * uniformHash
+	 * @return a double in [0,1) from a 64 bit mix (splitmix64) of n.
+	 */
+	protected static double uniformHash ( long n ) {
+		long z = n + 0x9E3779B97F4A7C15L;
+		z = ( z ^ ( z >>> 30 ) ) * 0xBF58476D1CE4E5B9L;
+		z = ( z ^ ( z >>> 27 ) ) * 0x94D049BB133111EBL;
+		z = z ^ ( z >>> 31 );
+		return ( z >>> 11 ) * 0x1.0p-53;
+	}
+
+	////////////////////////////////////////////////////////////////////////////
+	// bulk accessors
+	//
+
+	public double[] getRow ( int y, double[] dst ) {
+		int row = ynorm( y ) * sizeX;
+		for ( int x = 0; x < sizeX; ++x )
+			dst[x] = readFixed[row + x] / scale;
+		return dst;
+	}
+
+	public double getRowSum ( int y ) {
+		long sum = 0;
+		int row = ynorm( y ) * sizeX;
+		for ( int x = 0; x < sizeX; ++x )
+			sum += readFixed[row + x];
+		return sum / scale;
+	}
+
+	public double getTotal () {
+		long sum = 0;
+		for ( int i = 0; i < readFixed.length; ++i )
+			sum += readFixed[i];
+		return sum / scale;
+	}
+
+	protected void readValues ( java.nio.DoubleBuffer values ) {
+		for ( int i = 0; i < readFixed.length; ++i )
+			readFixed[i] = toFixed( values.get() * scale, 0.5 );
+		numPending = 0;
+	}
+
+	public double getMax () {
+		int max = 0;
+		for ( int i = 0; i < readFixed.length; ++i )
+			max = Math.max( max, readFixed[i] );
+		return max / scale;
+	}
+
+	public int getActiveCells () {
+		return sizeX * sizeY;
+	}
+
+	////////////////////////////////////////////////////////////////////////////
+	// padded copy with a ghost border, as chars too
+	//
+
+	protected Object readArray () { return readFixed; }
+	protected Object newGhostArray ( int n ) {
+		ghostFixed = new char[n];
+		return ghostFixed;
+	}
+	/**
+	 * getGhostFixed
+	 * @return the padded copy, as stored: the value at ghostIndex(x,y)
+	 * is getGhostFixed()[ghostIndex(x,y)] / scale.
+	 */
+	public char[] getGhostFixed () { return ghostArray != null ? ghostFixed : null; }
+
+}
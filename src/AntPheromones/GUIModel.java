@@ -15,6 +15,8 @@ import uchicago.src.sim.gui.ColorMap;
 import uchicago.src.sim.gui.DisplaySurface;
 import uchicago.src.sim.gui.Object2DDisplay;
 import uchicago.src.sim.gui.Value2DDisplay;
+import uchicago.src.sim.space.Diffuse2D;
+import uchicago.src.sim.space.Object2DGrid;
 
 
 public class GUIModel extends Model {
@@ -23,6 +25,8 @@ public class GUIModel extends Model {
 	private Object2DDisplay  foodDisplay;  // 2D object lattics -> display (Repast) FOOD!
     private DisplaySurface	 dsurf;		    // display surface (RePast)
 	public Value2DDisplay   pSpaceDisplay; // 2D Value lattice  -> display (Repast)
+	public Diffuse2D		pSpaceMirror;  // copy of pSpace values the Value2DDisplay can read
+	public Object2DGrid		worldMirror;   // copy of world contents for the Object2DDisplays
 
     public  OpenSequenceGraph		graph;
     public  OpenSequenceGraph		graphNbors;
@@ -139,11 +143,15 @@ public class GUIModel extends Model {
 		// enable the custom action(s)
 		modelManipulator.setEnabled( true );
 		
-		// create mapper object, from 2D GridWorld to the display surface
-		worldDisplay = new Object2DDisplay( world );
+		// create mapper object, from 2D GridWorld to the display surface.
+		// The world is not a Repast space, so we display (and probe) a
+		// mirror of it which we refresh each step (see updateWorldMirror).
+		worldMirror = new Object2DGrid( sizeX, sizeY );
+		updateWorldMirror();
+		worldDisplay = new Object2DDisplay( worldMirror );
 		
 		// let's try this with food
-		foodDisplay = new Object2DDisplay( world );
+		foodDisplay = new Object2DDisplay( worldMirror );
 
 		// speed up display of ants -- just display them!
         worldDisplay.setObjectList( antList );
@@ -157,7 +165,11 @@ public class GUIModel extends Model {
 		// The Value2DDisplay does this mapping with the parameters m,c:
 		//   int color index = (state / m) + c
 		// so we want m = truncate( maxValue / maxColorIndex ) 
-		pSpaceDisplay = new Value2DDisplay( pSpace, pherColorMap );
+		// The pSpace is not a Repast space, so we display a mirror of it
+		// which we refresh each step (see updatePSpaceMirror).
+		pSpaceMirror = new Diffuse2D( diffusionK, evapRate, sizeX, sizeY );
+		updatePSpaceMirror();
+		pSpaceDisplay = new Value2DDisplay( pSpaceMirror, pherColorMap );
 		int m = (int) (maxPher / colorMapMax);
 		if ( rDebug > 1 )
 			System.out.printf( "  -> pSpaceDisplay scaling m = %d.\n", m );
@@ -267,6 +279,23 @@ public class GUIModel extends Model {
 	}
 
 
+	/**
+	 * updatePSpaceMirror
+	 * copy current pSpace values into the Repast space we display.
+	 */
+	public void updatePSpaceMirror () {
+		pSpace.copyToSpace( pSpaceMirror );
+		pSpaceMirror.update();
+	}
+
+	/**
+	 * updateWorldMirror
+	 * copy current world contents into the Repast grid we display.
+	 */
+	public void updateWorldMirror () {
+		world.copyToGrid( worldMirror );
+	}
+
 	/**
 	// setBugColorBasedOnProbRandMove
 	*/
@@ -309,6 +338,8 @@ public class GUIModel extends Model {
 		super.step();			// the model does whatever it does
 
 		// add things after this for all displays (graphs, etc)
+		updatePSpaceMirror();
+		updateWorldMirror();
 		dsurf.updateDisplay();
 		graph.step();
 		graphNbors.step();
@@ -2,15 +2,15 @@ package  AntPheromones;
 
 /**
 * GridWorld
-* Extend the Repast Object2DGrid class to implement
-* a world of discrete cells with these movement rules:
+* A world of discrete cells with these movement rules:
 * * An object can't move into an occupied cell
 * * Bounded world (can't move off the edges)
 * This provides these methods:
 * a) moveObject 
 *    check the "physics" and moves (or not) an object 
-* b) addToRandomLocationInWorld -- a version
-*    that works best for worlds with density < 0.8 or so.
+* b) placeAtRandomLocation -- with the free-cell index (setFreeCellIndex)
+*    this is O(1) at any density; without it (the default), it
+*    rejection-samples, which works best for worlds with density < 0.8 or so.
 * c) getOpenNeighborLocations ( int x, int y )
 *    return an arraylist of points for open cells around x,y
 *
@@ -19,24 +19,371 @@ package  AntPheromones;
 *
 * This implements only one constructor, given  x,y-size of the world
 * and the Model using the world/
+*
+* The world used to be a Repast Object2DGrid.  Now it keeps its own
+* flat array of the object in each cell (index y*xSize + x), plus a
+* bitset of which cells are occupied, so the open-cell checks in the
+* hot paths (isOpen) are a single bit read with no calls into Repast.
+* getObjectAt/putObjectAt work as they did in Object2DGrid.
+* For the Repast displays, copyToGrid fills an Object2DGrid with the
+* current contents (see GUIModel).
+*
+* The free-cell index is a CellSet of the empty cells, kept up to
+* date by putObjectAt, so a random empty cell is one draw away.
+* With setEdgePolicy there is a second one of just the empty cells on
+* the chosen edges, for placeAtRandomEdge (and reserveRandomEdgeCells,
+* which takes many at once).  That one is indexed by position along
+* the edges (see edgeIndex), so it is the size of the perimeter, not
+* of the world.
+*
+* For the neighbor counts the model averages each step, updateNeighborTable
+* builds a summed-area table of the occupied cells in one pass, after which
+* countNeighborsFromTable counts the objects in any box around a cell
+* with four reads, whatever its radius.
+*
+* With setConcurrentMoves(true), objects in cells far enough apart can
+* be moved on different threads (see TileActivation): putObjectAt then
+* sets the occupied bits under a lock per word (neighboring cells share
+* a word), and leaves the free-cell indexes alone, until syncFreeCells
+* is called for the cells that changed.
 *
  */
 
 import java.awt.Point;
 import java.util.ArrayList;
 
-import uchicago.src.sim.space.*;
+import uchicago.src.sim.space.Object2DGrid;
 
-public class GridWorld extends Object2DGrid {
+public class GridWorld {
 
 	/** the Model that is using this world. */
 	public Model theModel;
 
+	protected int xSize, ySize;
+	protected Object[] cells;		// object in each cell, or null
+	protected long[] occupied;		// bit i is set if cells[i] != null
+	protected CellSet freeCells;	// the empty cells, or null if not indexed
+
+	// which edges placeAtRandomEdge uses (x=0 is left, y=0 is top)
+	public static final int noEdgeIndex = 0;
+	public static final int leftEdge = 1;
+	public static final int topLeftEdges = 2;
+	public static final int allEdges = 3;
+	protected int edgePolicy = noEdgeIndex;
+	protected CellSet freeEdgeCells;	// the empty cells on those edges, by edgeIndex
+	protected int[] edgeCells;			// the cell (y*xSize + x) at each edgeIndex
+
+	// summed-area table: entry (y+1)*(xSize+1) + x+1 is the number of
+	// occupied cells with x' <= x and y' <= y (see updateNeighborTable)
+	protected int[] neighborTable;
+
+	protected Object[] wordLocks;	// with concurrent moves, locks for the occupied words
+
+	protected RandomSource random = new ColtRandomSource();	// for the random placements
+
 	public GridWorld(int sizeX, int sizeY, Model aModel) {
-		super(sizeX, sizeY);
+		xSize = sizeX;
+		ySize = sizeY;
+		cells = new Object[ sizeX * sizeY ];
+		occupied = new long[ ( sizeX * sizeY + 63 ) >> 6 ];
 		theModel = aModel;
 	}
 
+	/**
+	 * setFreeCellIndex
+	 * turn the index of empty cells (used by placeAtRandomLocation) on or off.
+	 * It is built when turned on, and kept up to date after that.
+	 */
+	public void setFreeCellIndex(boolean b) {
+		if ( !b ) {
+			freeCells = null;
+			return;
+		}
+		if ( freeCells != null )
+			return;			// already on
+		freeCells = new CellSet( xSize * ySize );
+		for (int i = 0; i < xSize * ySize; ++i) {
+			if ( cells[i] == null )
+				freeCells.add(i);
+		}
+	}
+	public boolean getFreeCellIndex() { return freeCells != null; }
+
+	/**
+	 * setEdgePolicy
+	 * pick which edges placeAtRandomEdge uses, and index their empty cells.
+	 * noEdgeIndex turns the index off.
+	 */
+	public void setEdgePolicy(int p) {
+		if ( p < noEdgeIndex || p > allEdges ) {
+			System.err.printf( "\nGridWorld: unknown edgePolicy %d, using %d!\n", p, noEdgeIndex );
+			p = noEdgeIndex;
+		}
+		edgePolicy = p;
+		if ( p == noEdgeIndex ) {
+			freeEdgeCells = null;
+			edgeCells = null;
+			return;
+		}
+		int n = numEdgeCells();
+		freeEdgeCells = new CellSet( n );
+		edgeCells = new int[ n ];
+		// add them in row order, as the picks depend on the order
+		for (int y = 0; y < ySize; ++y) {
+			for (int x = 0; x < xSize; ++x) {
+				int k = edgeIndex(x, y);
+				if ( k >= 0 ) {
+					edgeCells[k] = y * xSize + x;
+					if ( cells[y * xSize + x] == null )
+						freeEdgeCells.add( k );
+				}
+				else if ( x < xSize - 2 )
+					x = xSize - 2;		// only the last one of this row can be
+			}
+		}
+	}
+	public int getEdgePolicy() { return edgePolicy; }
+	public int getNumFreeEdgeCells() {
+		return freeEdgeCells == null ? 0 : freeEdgeCells.size();
+	}
+
+	/**
+	 * isEdgeCell
+	 * @return true if x,y is on one of the edges of the edgePolicy.
+	 */
+	public final boolean isEdgeCell(int x, int y) {
+		return edgeIndex(x, y) >= 0;
+	}
+
+	/**
+	 * edgeIndex
+	 * @return the position of x,y along the edges of the edgePolicy, or -1
+	 * if it isn't on them.  The top edge comes first (x), then the left
+	 * (from y = 1), the right, and the bottom between the corners.
+	 */
+	public final int edgeIndex(int x, int y) {
+		switch ( edgePolicy ) {
+		case leftEdge:
+			return x == 0 ? y : -1;
+		case topLeftEdges:
+			if ( y == 0 )
+				return x;
+			return x == 0 ? xSize + y - 1 : -1;
+		case allEdges:
+			if ( y == 0 )
+				return x;
+			if ( x == 0 )
+				return xSize + y - 1;
+			if ( x == xSize - 1 )
+				return xSize + ySize - 1 + y - 1;
+			if ( y == ySize - 1 )
+				return xSize + 2 * ( ySize - 1 ) + x - 1;
+			return -1;
+		default:
+			return -1;
+		}
+	}
+
+	/**
+	 * numEdgeCells
+	 * @return the number of cells on the edges of the edgePolicy.
+	 */
+	public int numEdgeCells() {
+		switch ( edgePolicy ) {
+		case leftEdge:		return ySize;
+		case topLeftEdges:	return xSize + ySize - 1;
+		case allEdges:		return xSize == 1 || ySize == 1 ? xSize * ySize
+												: 2 * ( xSize + ySize ) - 4;
+		default:			return 0;
+		}
+	}
+
+	public int getNumFreeCells() {
+		if ( freeCells != null )
+			return freeCells.size();
+		int n = 0;
+		for (int i = 0; i < xSize * ySize; ++i) {
+			if ( cells[i] == null )
+				++n;
+		}
+		return n;
+	}
+
+	/**
+	 * setConcurrentMoves
+	 * turn on (or off) the mode where putObjectAt can be called from
+	 * several threads at once, for cells that are far enough apart.
+	 * When it is turned off, the caller must have called syncFreeCells
+	 * on all the cells that changed.
+	 */
+	public void setConcurrentMoves(boolean b) {
+		if ( !b ) {
+			wordLocks = null;
+			return;
+		}
+		wordLocks = new Object[64];		// a power of 2
+		for (int k = 0; k < wordLocks.length; ++k)
+			wordLocks[k] = new Object();
+	}
+	public boolean getConcurrentMoves() { return wordLocks != null; }
+
+	/**
+	 * syncFreeCells
+	 * bring the free-cell indexes up to date for x,y, after concurrent moves.
+	 */
+	public void syncFreeCells(int x, int y) {
+		int i = cellIndex(x, y);
+		if ( cells[i] == null ) {
+			if ( freeCells != null )
+				freeCells.add(i);
+			if ( freeEdgeCells != null && isEdgeCell(x, y) )
+				freeEdgeCells.add( edgeIndex(x, y) );
+		}
+		else {
+			if ( freeCells != null )
+				freeCells.remove(i);
+			if ( freeEdgeCells != null && isEdgeCell(x, y) )
+				freeEdgeCells.remove( edgeIndex(x, y) );
+		}
+	}
+
+	public RandomSource getRandomSource() { return random; }
+	public void setRandomSource(RandomSource r) { random = r; }
+
+	public int getSizeX() { return xSize; }
+	public int getSizeY() { return ySize; }
+
+	/**
+	 * getObjectAt
+	 * @return the object at x,y, or null if the cell is empty.
+	 * throws IndexOutOfBoundsException if x,y is not in the world.
+	 */
+	public Object getObjectAt(int x, int y) {
+		return cells[ cellIndex(x, y) ];
+	}
+
+	/**
+	 * putObjectAt
+	 * put obj (null to empty the cell) at x,y.
+	 * NB: does not tell obj its new location, the caller must do that.
+	 */
+	public void putObjectAt(int x, int y, Object obj) {
+		int i = cellIndex(x, y);
+		cells[i] = obj;
+		if ( wordLocks != null ) {		// just the bit, the indexes wait for syncFreeCells
+			synchronized ( wordLocks[ ( i >> 6 ) & ( wordLocks.length - 1 ) ] ) {
+				if ( obj == null )
+					occupied[i >> 6] &= ~( 1L << i );
+				else
+					occupied[i >> 6] |= 1L << i;
+			}
+			return;
+		}
+		if ( obj == null ) {
+			occupied[i >> 6] &= ~( 1L << i );
+			if ( freeCells != null )
+				freeCells.add(i);
+			if ( freeEdgeCells != null && isEdgeCell(x, y) )
+				freeEdgeCells.add( edgeIndex(x, y) );
+		}
+		else {
+			occupied[i >> 6] |= 1L << i;
+			if ( freeCells != null )
+				freeCells.remove(i);
+			if ( freeEdgeCells != null && isEdgeCell(x, y) )
+				freeEdgeCells.remove( edgeIndex(x, y) );
+		}
+	}
+
+	/**
+	 * isOpen
+	 * @return true if there is nothing at x,y.
+	 * NB: x,y must be in the world -- there is no check!
+	 */
+	public final boolean isOpen(int x, int y) {
+		int i = y * xSize + x;
+		return ( occupied[i >> 6] & ( 1L << i ) ) == 0;
+	}
+
+	/**
+	 * cellIndex
+	 * @return index of x,y into the cell arrays, after checking it is in the world.
+	 */
+	protected final int cellIndex(int x, int y) {
+		if ( x < 0 || y < 0 || x >= xSize || y >= ySize )
+			throw new IndexOutOfBoundsException( "x,y = " + x + "," + y + " is not in the world" );
+		return y * xSize + x;
+	}
+
+	/**
+	 * countMooreNeighbors
+	 * @return the number of objects within dx,dy of x,y, not counting x,y itself.
+	 * Like the Object2DGrid method it replaces, this does not wrap around
+	 * the edges of the world.
+	 */
+	public int countMooreNeighbors(int x, int y, int dx, int dy) {
+		int minX = Math.max(0, x - dx);
+		int maxX = Math.min(x + dx, xSize - 1);
+		int minY = Math.max(0, y - dy);
+		int maxY = Math.min(y + dy, ySize - 1);
+		int count = 0;
+		for (int ty = minY; ty <= maxY; ++ty) {
+			for (int tx = minX; tx <= maxX; ++tx) {
+				if ( !isOpen(tx, ty) && ( tx != x || ty != y ) )
+					++count;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * updateNeighborTable
+	 * rebuild the summed-area table of occupied cells from the current
+	 * contents, for countNeighborsFromTable.
+	 */
+	public void updateNeighborTable() {
+		int w = xSize + 1;
+		if ( neighborTable == null )
+			neighborTable = new int[ w * ( ySize + 1 ) ];
+		int[] t = neighborTable;
+		for (int y = 0; y < ySize; ++y) {
+			int run = 0, above = y * w + 1, here = above + w;
+			for (int x = 0, i = y * xSize; x < xSize; ++x, ++i) {
+				run += (int) ( occupied[i >> 6] >>> i ) & 1;
+				t[here + x] = t[above + x] + run;
+			}
+		}
+	}
+
+	/**
+	 * countNeighborsFromTable
+	 * @return the number of objects within dx,dy of x,y, not counting x,y
+	 * itself, same as countMooreNeighbors (no wrap around), but read from
+	 * the table made by the last updateNeighborTable.
+	 */
+	public int countNeighborsFromTable(int x, int y, int dx, int dy) {
+		int w = xSize + 1;
+		int x0 = Math.max(0, x - dx);
+		int x1 = Math.min(x + dx, xSize - 1) + 1;
+		int y0 = Math.max(0, y - dy) * w;
+		int y1 = ( Math.min(y + dy, ySize - 1) + 1 ) * w;
+		int[] t = neighborTable;
+		int count = t[y1 + x1] - t[y1 + x0] - t[y0 + x1] + t[y0 + x0];
+		return isOpen(x, y) ? count : count - 1;
+	}
+
+	/**
+	 * copyToGrid
+	 * put the current contents of the world into a Repast grid
+	 * (of the same size), so Repast displays and probes can use it.
+	 */
+	public void copyToGrid(Object2DGrid grid) {
+		for (int y = 0; y < ySize; ++y) {
+			for (int x = 0; x < xSize; ++x)
+				grid.putObjectAt(x, y, cells[y * xSize + x]);
+		}
+	}
+
 	/**
 	 * placeAtRandomLocationInWorld
 	 * 
@@ -44,11 +391,25 @@ public class GridWorld extends Object2DGrid {
 	 * @return boolean placed or not place the object in a randomly selected
 	 *         empty location tell the object to set its x,y accordingly
 	 * 
-	 *         NB: if it can't find a spot after X*Y trials, it gives up and
-	 *         returns (added=) false. Works best for densities < 0.8 or so.
+	 *         With the free-cell index, this picks one of the empty cells
+	 *         with a single draw, and only fails if there are none.
+	 *         NB: without the index, if it can't find a spot after X*Y trials, 
+	 *         it gives up and returns (added=) false. 
+	 *         Works best for densities < 0.8 or so.
 	 */
 
 	public boolean placeAtRandomLocation(ObjectInGrid obj) {
+		if ( freeCells != null ) {
+			if ( freeCells.size() == 0 )
+				return false;
+			int i = freeCells.get( random.nextIntFromTo(0, freeCells.size() - 1) );
+			int x = i % xSize, y = i / xSize;
+			putObjectAt( x, y, obj );
+			obj.setX( x );
+			obj.setY( y );
+			return true;
+		}
+
 		int x = 0, y = 0; // candidate x,y locations
 		int maxTrials = xSize * ySize; // only try this many times
 		int numTrials = 0; // haven't tried to look at any cells yet
@@ -56,9 +417,9 @@ public class GridWorld extends Object2DGrid {
 
 		// find a randomly selected empty location, or give up if takes too long
 		while (!foundOpenCell && numTrials < maxTrials) {
-			x = Model.getUniformIntFromTo(0, xSize - 1);
-			y = Model.getUniformIntFromTo(0, ySize - 1);
-			if ( getObjectAt(x, y) == null ) // found empty cell!
+			x = random.nextIntFromTo(0, xSize - 1);
+			y = random.nextIntFromTo(0, ySize - 1);
+			if ( isOpen(x, y) ) // found empty cell!
 				foundOpenCell = true;
 			else
 				// still need to look
@@ -74,6 +435,49 @@ public class GridWorld extends Object2DGrid {
 		return foundOpenCell;
 	}
 
+	/**
+	 * placeAtRandomEdge
+	 * 
+	 * @param ObjectInGrid object to be placed in world
+	 * @return boolean placed or not.  Put the object in a randomly selected
+	 *         empty cell on the edges picked by setEdgePolicy, with one draw,
+	 *         and tell the object its x,y.  Returns false only if every
+	 *         cell on those edges is occupied (or there is no edge index).
+	 */
+	public boolean placeAtRandomEdge(ObjectInGrid obj) {
+		if ( freeEdgeCells == null || freeEdgeCells.size() == 0 )
+			return false;
+		int i = edgeCells[ freeEdgeCells.get( random.nextIntFromTo(0, freeEdgeCells.size() - 1) ) ];
+		int x = i % xSize, y = i / xSize;
+		putObjectAt( x, y, obj );
+		obj.setX( x );
+		obj.setY( y );
+		return true;
+	}
+
+	/**
+	 * reserveRandomEdgeCells
+	 * pick n different empty cells at random (one draw each) from the edges
+	 * picked by setEdgePolicy, putting their indexes (y*xSize + x) in cells,
+	 * and take them out of the free-cell indexes.  They are left empty, so
+	 * the caller must then put an object in each with putObjectAt.
+	 * @return how many were picked, fewer than n only if the edges filled up
+	 */
+	public int reserveRandomEdgeCells(int n, int[] cells) {
+		if ( freeEdgeCells == null )
+			return 0;
+		n = Math.min( n, freeEdgeCells.size() );
+		for ( int k = 0; k < n; ++k ) {
+			int e = freeEdgeCells.get( random.nextIntFromTo(0, freeEdgeCells.size() - 1) );
+			freeEdgeCells.remove(e);
+			int i = edgeCells[e];
+			if ( freeCells != null )
+				freeCells.remove(i);
+			cells[k] = i;
+		}
+		return n;
+	}
+
 	/**
 	 * moveObject
 	 * 
@@ -99,7 +503,7 @@ public class GridWorld extends Object2DGrid {
 		}
 
 		// see if new cell is empty.
-		if ( getObjectAt(newX, newY) != null ) {
+		if ( !isOpen(newX, newY) ) {
 			return false;
 		}
 
@@ -132,7 +536,7 @@ public class GridWorld extends Object2DGrid {
 		}
 
 		// see if new cell is empty.
-		if ( getObjectAt(newX, newY) != null ) {
+		if ( !isOpen(newX, newY) ) {
 			return false;
 		}
 
@@ -165,7 +569,7 @@ public class GridWorld extends Object2DGrid {
 		// search area for open cells
 		for (int ty = minY; ty <= maxY; ++ty) {
 			for (int tx = minX; tx <= maxX; ++tx) {
-				if (getObjectAt(tx, ty) == null) { // its open
+				if (isOpen(tx, ty)) { // its open
 					Point p = new Point(tx, ty);
 					ptList.add(p);
 				}
@@ -0,0 +1,29 @@
+package AntPheromones;
+
+/**
+InteriorKernel
+
+The inner loop of PheromoneField's row kernels: diffuse a run of cells
+in one row, none of them a wraparound column, so their neighbors are
+straight offsets into the up, own and down rows.
+
+PheromoneField's rowKernel does this with a plain loop.  The
+vectorKernel drops in VectorInteriorKernel (in src-vector), which does
+it with the jdk.incubator.vector API; it is loaded by name, so the model
+builds and runs without that module and the class (see
+PheromoneField.setKernel).
+
+*/
+
+public interface InteriorKernel {
+
+	/**
+	 * diffuseInterior
+	 * apply the diffusion rule (see PheromoneField) to columns [xStart,xEnd)
+	 * of the row at offset row in src, writing into dst; up and down are
+	 * the offsets of the rows above and below.  Needs 1 <= xStart, xEnd < sizeX.
+	 */
+	void diffuseInterior ( double[] src, double[] dst, int row, int up, int down,
+						   int xStart, int xEnd, double k, double e );
+
+}
@@ -10,6 +10,8 @@ import java.util.Collections;
 import java.util.Comparator;
 import java.util.Iterator;
 import java.awt.Point;
+import java.io.File;
+import java.io.IOException;
 import java.io.PrintWriter;
 
 import org.apache.commons.math.stat.descriptive.DescriptiveStatistics;
@@ -33,13 +35,28 @@ public class Model extends ModelParameters {
 	public int 			    pSourceX, pSourceY; // exogenous source of pheromone
 	public double			exogRate = 0.30;   	// exog source rate, frac  of maxPher
 	public int				initialSteps = 100; // pump in exog pher, diff, this # stpes
+	public int				diffusionThreads = 1; // threads used to diffuse pSpace
+	public int				diffusionKernel = PheromoneField.scalarKernel; // inner loop for diffuse
+	public int				pherActiveRegion = 0; // 1 -> only diffuse/sum the non-zero box
+	public double			pherEpsilon = 1.0e-6; // with pherActiveRegion, flush below this to 0
+	public int				pherFixedPoint = 0;   // 0=double, 1,2=16-bit round nearest (lossy),stochastic
+	public int				fusedPherKernel = 0;  // 1 -> diffuse and sum pSpace in one pass
+	public String			pherCacheDirName = ""; // if not empty, cache warmed-up pSpace here
+	public int				ghostWidth = 1;		  // ghost border on world, pSpace (0 = none)
+	public int				freeCellIndex = 0;	  // 1 -> place at random via index of empty cells
+	public int				edgePolicy = GridWorld.noEdgeIndex;  // where offspring go (0 = old way)
+	public int				distanceTable = SourceDistanceTable.doublePrecision; // 0 = sqrt each time
+	public SourceDistanceTable	sourceDistances;	// distance, death scale per cell (or null)
+	public int				senseRadius = 1;	  // how far ants look for more pheromone
+	public WindowMaxFilter	senseMaxFilter;		  // window max for senseRadius > 1 (or null)
 	
 	// instance variables for model "structures"
 	public ArrayList<Ant>   antList = new ArrayList<Ant> ();
+	public AntPopulation	antPop;		  // the state of the ants on antList
 	public ArrayList<Food>  foodList = new ArrayList<Food> ();
-	public TorusWorld	    world;         	// 2D class built over Repast
-	public Diffuse2D  	   	pSpace;			// a 2d space for pheromones from RePast
-	public Diffuse2D        pSpaceCarryingFood;    // a 2d space for pheromones dropped by ants
+	public TorusWorld	    world;         	// 2D grid of cells the ants live in
+	public PheromoneField	pSpace;			// a 2d space for pheromones
+	public PheromoneField   pSpaceCarryingFood;    // a 2d space for pheromones dropped by ants
 
 	public double			probRandMoveMean;   // mean,var of probRandMove
 	public double			probRandMoveSD;    // assigned to bugs as created
@@ -48,14 +65,41 @@ public class Model extends ModelParameters {
 	public double			probDieCenterMean;  // mean,var of prob of dying in 
 	public double			probDieCenterSD;   // center of world (by food!)
 	public double			probDieCenterMutSD;   // center of world (by food!)
+	public int				truncatedNormal = 0;  // 1=draw traits in [0,1] exactly (TruncatedNormal)
 
 	public double			bestWinsProb = 0.90; // for tournament selection
 	public int				tournamentSize = 2;  // size of tournament
+	protected TournamentSelector tournament = new TournamentSelector();
+	public int				batchOffspring = 0;  // 1=make each step's new ants all at once
+
+	// scratch for generateNewAntsBatch, one entry per new ant
+	protected int[]			newCells = new int[0];	// where it goes
+	protected int[]			newParents = new int[0];	// its parent's index in antList
+	protected double[]		newWeight = new double[0];
+	protected double[]		newProbDieCenter = new double[0];
+	protected double[]		newProbRandMove = new double[0];
 	
 	public int				activationOrder;    // control how bug-activation is done
 	public static final     int fixedActivationOrder = 0;
 	public static final     int rwrActivationOrder = 1;  // random with replacement
 	public static final     int rworActivationOrder = 2; // random without replacement
+	public static final     int parallelActivationOrder = 3; // all propose, then commit
+	public static final     int tiledActivationOrder = 4; // tiles of a color at once
+	public int				antThreads = 1;		  // threads ants step on (same results for any #)
+	public ParallelActivation parallelActivation; // for parallelActivationOrder (or null)
+	public int				tileSize = 8;		  // min side of tiles for tiledActivationOrder
+	public TileActivation	tileActivation;		  // for tiledActivationOrder (or null)
+
+	// where the model, world and ants get random numbers (see RandomSource)
+	public static final     int coltRandomSource = 0;	 // Repast's shared generators
+	public static final     int counterRandomSource = 1; // Philox, per ant per step
+	public static final     int xoshiroRandomSource = 2; // xoshiro256++, in bulk
+	public static final     long modelStream = -1L;	 // streamId of the model's own draws
+	public int				randomSource = coltRandomSource;
+	public RandomSource		rng = new ColtRandomSource();  // the model's (and world's)
+	protected RandomSource	antStream;			  // for ants stepped in order (or null)
+	protected Ant.Scratch	antScratch;			  // drawing from antStream
+	public long				numSteps = 0;		  // steps done since the model was built
 
 	public int				randomMoveMethod = 0;  // how bugs choose random cell to move to
 	
@@ -118,6 +162,23 @@ public class Model extends ModelParameters {
 		parametersMap.put( "pRFN", "pherReportFileName" );
 		parametersMap.put( "pRF", "pherReportFrequency" );
 		parametersMap.put( "iS", "initialSteps" );
+		parametersMap.put( "dT", "diffusionThreads" );
+		parametersMap.put( "dKern", "diffusionKernel" );
+		parametersMap.put( "pAR", "pherActiveRegion" );
+		parametersMap.put( "pEps", "pherEpsilon" );
+		parametersMap.put( "pFP", "pherFixedPoint" );
+		parametersMap.put( "fPK", "fusedPherKernel" );
+		parametersMap.put( "pCDN", "pherCacheDirName" );
+		parametersMap.put( "gW", "ghostWidth" );
+		parametersMap.put( "fCI", "freeCellIndex" );
+		parametersMap.put( "eP", "edgePolicy" );
+		parametersMap.put( "dTab", "distanceTable" );
+		parametersMap.put( "sR", "senseRadius" );
+		parametersMap.put( "aT", "antThreads" );
+		parametersMap.put( "tileS", "tileSize" );
+		parametersMap.put( "rSrc", "randomSource" );
+		parametersMap.put( "tN", "truncatedNormal" );
+		parametersMap.put( "bOff", "batchOffspring" );
 	}
 
 	// Specify what appears in the repast parameter panel
@@ -128,7 +189,13 @@ public class Model extends ModelParameters {
 							"probDieCenterMean", "probDieCenterSD", "probDieCenterMutSD",
 							"activationOrder", "randomMoveMethod", 
 							"bestWinsProb", "tournamentSize", "pherReportFileName",
-							"pherReportFrequency",  "initialSteps",
+							"pherReportFrequency",  "initialSteps", "diffusionThreads",
+							"diffusionKernel", "pherActiveRegion", "pherEpsilon",
+							"pherFixedPoint", "fusedPherKernel",
+							"pherCacheDirName", "ghostWidth", "freeCellIndex",
+							"edgePolicy", "distanceTable", "senseRadius",
+							"antThreads", "tileSize", "randomSource", "truncatedNormal",
+							"batchOffspring",
 				// these are from the super class:
 				"rDebug", "seed" };
 		return params;
@@ -157,6 +224,10 @@ public class Model extends ModelParameters {
 	public void setSizeY ( int szY ) { 
 		sizeY = szY;  
 	}
+	public int getPherFixedPoint () { return pherFixedPoint; }
+	public void setPherFixedPoint ( int pherFixedPoint ) {
+		this.pherFixedPoint = pherFixedPoint;
+	}
 
 	//  The following can be changed in mid-run:
 	public double getDiffusionK () { return diffusionK; }
@@ -241,10 +312,14 @@ public class Model extends ModelParameters {
 	public void setActivationOrder ( int activationOrder ) { 
 		if ( (activationOrder != fixedActivationOrder) &&
 			  (activationOrder != rwrActivationOrder) &&
-			  (activationOrder != rworActivationOrder) ) {
+			  (activationOrder != rworActivationOrder) &&
+			  (activationOrder != parallelActivationOrder) &&
+			  (activationOrder != tiledActivationOrder) ) {
 			System.err.printf( "\nIllegal activation Order!\n" );
 		}
 		this.activationOrder = activationOrder;  
+		if ( tileActivation != null )
+			tileActivation.invalidate();  // other orders change the antList
 	}
 
 	// Note that randomMoveMethod is also sent to the Ant class,
@@ -255,6 +330,81 @@ public class Model extends ModelParameters {
 		Ant.setRandomMoveMethod( randomMoveMethod );
 	}
 
+	public String getPherCacheDirName () { return pherCacheDirName; }
+	public void setPherCacheDirName ( String s ) { pherCacheDirName = s; }
+	public int getGhostWidth () { return ghostWidth; }
+	public void setGhostWidth ( int g ) { ghostWidth = g; }
+	public int getFreeCellIndex () { return freeCellIndex; }
+	public void setFreeCellIndex ( int i ) {
+		freeCellIndex = i;
+		if ( world != null )
+			world.setFreeCellIndex( freeCellIndex == 1 );
+	}
+	public int getDistanceTable () { return distanceTable; }
+	public void setDistanceTable ( int d ) { distanceTable = d; }
+	public int getSenseRadius () { return senseRadius; }
+	public void setSenseRadius ( int r ) {
+		if ( r < 1 ) {
+			System.err.printf( "\nsenseRadius %d must be >= 1, using 1.\n", r );
+			r = 1;
+		}
+		senseRadius = r;
+		if ( senseRadius == 1 )
+			senseMaxFilter = null;
+		else if ( pSpace != null && ( senseMaxFilter == null || senseMaxFilter.radius != r ) ) {
+			senseMaxFilter = new WindowMaxFilter( sizeX, sizeY, senseRadius );
+			senseMaxFilter.build( pSpace );
+		}
+	}
+	public int getAntThreads () { return antThreads; }
+	public void setAntThreads ( int n ) {
+		antThreads = n;
+		if ( parallelActivation != null )
+			parallelActivation.setNumThreads( antThreads );
+		if ( tileActivation != null )
+			tileActivation.setNumThreads( antThreads );
+	}
+	public int getRandomSource () { return randomSource; }
+	public void setRandomSource ( int r ) {  // used when the model is next built
+		if ( r != coltRandomSource && r != counterRandomSource && r != xoshiroRandomSource ) {
+			System.err.printf( "\nIllegal randomSource %d, using %d!\n", r, coltRandomSource );
+			r = coltRandomSource;
+		}
+		randomSource = r;
+	}
+	public int getTruncatedNormal () { return truncatedNormal; }
+	public void setTruncatedNormal ( int t ) { truncatedNormal = t; }
+	public int getBatchOffspring () { return batchOffspring; }
+	public void setBatchOffspring ( int b ) {
+		batchOffspring = b;
+		if ( world != null )
+			world.setEdgePolicy( worldEdgePolicy() );
+	}
+	public int getTileSize () { return tileSize; }
+	public void setTileSize ( int t ) {
+		if ( t < 2 ) {
+			System.err.printf( "\ntileSize %d must be >= 2, using 2.\n", t );
+			t = 2;
+		}
+		tileSize = t;
+		if ( tileActivation != null )
+			tileActivation.shutdown();
+		tileActivation = null;
+	}
+	public int getEdgePolicy () { return edgePolicy; }
+	public void setEdgePolicy ( int p ) {
+		edgePolicy = p;
+		if ( world != null )
+			world.setEdgePolicy( worldEdgePolicy() );
+	}
+	// the edges the world indexes: edgePolicy's, or with edgePolicy 0 and
+	// batchOffspring 1, the top and left ones the old way uses, as
+	// generateNewAntsBatch needs an index to take its cells from.
+	public int worldEdgePolicy () {
+		if ( edgePolicy == GridWorld.noEdgeIndex && batchOffspring == 1 )
+			return GridWorld.topLeftEdges;
+		return edgePolicy;
+	}
 	public String getPherReportFileName () { return pherReportFileName; }
 	public void setPherReportFileName ( String s ) { pherReportFileName = s; }
 	public int getPherReportFrequency () { return pherReportFrequency; }
@@ -268,6 +418,36 @@ public class Model extends ModelParameters {
 		this.initialSteps = initialSteps;
 	}
 
+	// these can be changed in mid-run too
+	public int getDiffusionThreads () { return diffusionThreads; }
+	public void setDiffusionThreads ( int diffusionThreads ) {
+		this.diffusionThreads = diffusionThreads;
+		if ( pSpace != null )
+			pSpace.setNumThreads( diffusionThreads );
+	}
+	public int getDiffusionKernel () { return diffusionKernel; }
+	public void setDiffusionKernel ( int diffusionKernel ) {
+		this.diffusionKernel = diffusionKernel;
+		if ( pSpace != null )
+			pSpace.setKernel( diffusionKernel );
+	}
+	public int getPherActiveRegion () { return pherActiveRegion; }
+	public void setPherActiveRegion ( int pherActiveRegion ) {
+		this.pherActiveRegion = pherActiveRegion;
+		if ( pSpace != null )
+			setupPSpaceActiveRegion();
+	}
+	public int getFusedPherKernel () { return fusedPherKernel; }
+	public void setFusedPherKernel ( int fusedPherKernel ) {
+		this.fusedPherKernel = fusedPherKernel;
+	}
+	public double getPherEpsilon () { return pherEpsilon; }
+	public void setPherEpsilon ( double pherEpsilon ) {
+		this.pherEpsilon = pherEpsilon;
+		if ( pSpace != null )
+			setupPSpaceActiveRegion();
+	}
+
 	// getters for aggregate measures
 	public int getAntPopSize() { return antList.size(); }
 	public double getAntPopAvgX() { return antPopAvgX; }
@@ -291,10 +471,23 @@ public class Model extends ModelParameters {
 			System.out.printf( "==> userSetup...\n" );
 
 		antList = null;
+		antPop = null;
 		foodList = null; // discard old list 
 		world = null;                   // get rid of the world object!
+		if ( pSpace != null )
+			pSpace.shutdown();			// and its diffusion threads
 		pSpace = null;
+		if ( pSpaceCarryingFood != null )
+			pSpaceCarryingFood.shutdown();
 		pSpaceCarryingFood = null;
+		sourceDistances = null;
+		senseMaxFilter = null;
+		if ( parallelActivation != null )
+			parallelActivation.shutdown();
+		parallelActivation = null;
+		if ( tileActivation != null )
+			tileActivation.shutdown();
+		tileActivation = null;
 		Ant.resetNextId();				// reset ant ID's to start at 0
 
 		if ( avgDStats != null )
@@ -316,15 +509,33 @@ public class Model extends ModelParameters {
 			System.out.printf( "==> userBuildModel...\n" );
 
 		antList = new ArrayList<Ant> (); // create new empty list 
+		antPop = new AntPopulation( numAnts );
+		Ant.setPopulation( antPop );
 		foodList = new ArrayList<Food> ();
 		
 		// create the 2D grid world of requested size, linked to this model
 		world = new TorusWorld( sizeX, sizeY, this );
+		world.setGhostWidth( ghostWidth );
+		world.setFreeCellIndex( freeCellIndex == 1 );
+		world.setEdgePolicy( worldEdgePolicy() );
+		setupRandomSource();
 
 		createPSpaceAndInjectInitialPheromone();
-		for ( int i = 0; i < initialSteps; ++i ) { // repeat to get desired inital state
-			injectExogenousPheromoneAndUpdate();
-			pSpace.diffuse();
+		// the initial state depends only on pSpace parameters, so see if
+		// an earlier run already computed it, else compute and save it.
+		if ( !loadWarmStartPSpace() ) {
+			// repeat inject + diffuse to get desired inital state.  There are no
+			// ants yet, so pSpace can do all the steps in cache-sized tiles.
+			pSpace.diffuseSteps( initialSteps, pSourceX, pSourceY,
+								 maxPher * exogRate, maxPher );
+			saveWarmStartPSpace();
+		}
+		createSourceDistanceTable();
+		setSenseRadius( senseRadius );
+		if ( rDebug > 1 ) {
+			checkPSpaceAgainstDiffuse2D();
+			if ( pherFixedPoint > 0 )
+				checkFixedPointDrift();
 		}
 
 		// tell the Food class about this (Model)and world addresses
@@ -385,7 +596,11 @@ public class Model extends ModelParameters {
 
 		// Set up the pheromone space and related fields.
 		// create the 2D diffusion space for pheromones, tell bugs about it
-		pSpace = new Diffuse2D( diffusionK, evapRate, sizeX, sizeY );
+		pSpace = createPSpace();
+		pSpace.setNumThreads( diffusionThreads );
+		pSpace.setKernel( diffusionKernel );
+		pSpace.setGhostWidth( ghostWidth );
+		setupPSpaceActiveRegion();
 		// set up the location of exogenous source of pheromone
 		pSourceX = sizeX/2;
 		pSourceY = sizeY/2;
@@ -402,6 +617,153 @@ public class Model extends ModelParameters {
 		calcAndSetMaxDistanceToSource();
 	}
 
+	/**
+	 * createPSpace
+	 * @return a new pSpace, storing doubles or 16-bit fixed point values
+	 *         depending on pherFixedPoint.
+	 */
+	private PheromoneField createPSpace() {
+		if ( pherFixedPoint == 1 )
+			return new FixedPointPheromoneField( diffusionK, evapRate, sizeX, sizeY, maxPher,
+												 FixedPointPheromoneField.roundNearest );
+		if ( pherFixedPoint == 2 )
+			return new FixedPointPheromoneField( diffusionK, evapRate, sizeX, sizeY, maxPher,
+												 FixedPointPheromoneField.roundStochastic );
+		return new PheromoneField( diffusionK, evapRate, sizeX, sizeY );
+	}
+
+	/**
+	 * tell the pSpace whether to track the box of non-zero cells,
+	 * and what epsilon to use to flush small values to zero if it does.
+	 */
+	private void setupPSpaceActiveRegion() {
+		pSpace.setFlushEpsilon( pherActiveRegion == 1 ? pherEpsilon : 0.0 );
+		if ( pSpace.getActiveRegion() != ( pherActiveRegion == 1 ) )
+			pSpace.setActiveRegion( pherActiveRegion == 1 );
+	}
+
+	/**
+	 * warmStartKey
+	 * @return a string with every parameter that the pSpace state after the
+	 *         initialSteps depends on (doubles written exactly, in hex).
+	 */
+	public String warmStartKey () {
+		double eps = ( pherActiveRegion == 1 && pherFixedPoint == 0 ) ? pherEpsilon : 0.0;
+		return String.format( "X=%d Y=%d dK=%s eR=%s exogR=%s maxPher=%d iS=%d pFP=%d pEps=%s",
+							  sizeX, sizeY, Double.toHexString( diffusionK ),
+							  Double.toHexString( evapRate ), Double.toHexString( exogRate ),
+							  maxPher, initialSteps, pherFixedPoint, Double.toHexString( eps ) );
+	}
+
+	/**
+	 * warmStartFile
+	 * @return the cache file for the current warmStartKey -- the name is a
+	 *         64 bit (FNV-1a) hash of the key; the key itself is in the file.
+	 */
+	public File warmStartFile () {
+		long h = 0xcbf29ce484222325L;
+		String key = warmStartKey();
+		for ( int i = 0; i < key.length(); ++i ) {
+			h ^= key.charAt( i );
+			h *= 0x100000001b3L;
+		}
+		return new File( pherCacheDirName, String.format( "pSpace-%016x.bin", h ) );
+	}
+
+	/**
+	 * loadWarmStartPSpace
+	 * if pherCacheDirName is set and has a file for the current parameters,
+	 * load the pSpace from it.
+	 * @return true if loaded (so no need to do the initialSteps)
+	 */
+	private boolean loadWarmStartPSpace() {
+		if ( pherCacheDirName.length() == 0 )
+			return false;
+		File f = warmStartFile();
+		if ( !f.exists() )
+			return false;
+		try {
+			if ( pSpace.loadFrom( f, warmStartKey() ) ) {
+				if ( rDebug > 0 )
+					System.out.printf( "- userBuildModel: loaded initial pSpace from %s.\n", f );
+				return true;
+			}
+			System.err.printf( "\n** %s is not for these parameters, ignoring it.\n", f );
+		}
+		catch ( IOException e ) {
+			System.err.printf( "\n** couldn't read pSpace cache %s: %s\n", f, e.getMessage() );
+			createPSpaceAndInjectInitialPheromone();  // what we read may be bad, so start over
+		}
+		return false;
+	}
+
+	/**
+	 * saveWarmStartPSpace
+	 * if pherCacheDirName is set, save the initial pSpace there.
+	 */
+	private void saveWarmStartPSpace() {
+		if ( pherCacheDirName.length() == 0 )
+			return;
+		File f = warmStartFile();
+		try {
+			new File( pherCacheDirName ).mkdirs();
+			pSpace.saveTo( f, warmStartKey() );
+			if ( rDebug > 0 )
+				System.out.printf( "- userBuildModel: saved initial pSpace to %s.\n", f );
+		}
+		catch ( IOException e ) {
+			System.err.printf( "\n** couldn't write pSpace cache %s: %s\n", f, e.getMessage() );
+		}
+	}
+
+	/**
+	 * checkPSpaceAgainstDiffuse2D
+	 * for testing...  re-run the initial pheromone steps in a Repast Diffuse2D
+	 * and report the largest relative difference from our pSpace.
+	 * (test/AntPheromones/Diffuse2DTest checks this for all the pSpace modes,
+	 * and fails if it is over the tolerance.)
+	 */
+	public void checkPSpaceAgainstDiffuse2D () {
+		Diffuse2D d2d = new Diffuse2D( diffusionK, evapRate, sizeX, sizeY );
+		double initPher = Math.min( 2.0 * maxPher * exogRate, (double) maxPher );
+		d2d.putValueAt( pSourceX, pSourceY, initPher );
+		d2d.update();
+		for ( int i = 0; i < initialSteps; ++i ) {
+			double v = (maxPher * exogRate) + d2d.getValueAt( pSourceX, pSourceY );
+			d2d.putValueAt( pSourceX, pSourceY, Math.min( v, maxPher ) );
+			d2d.update();
+			d2d.diffuse();
+		}
+		double d = pSpace.maxRelativeDifference( d2d );
+		System.out.printf( "--- Test: pSpace vs Diffuse2D after %d steps: max rel diff %.3g (%s)\n",
+						   initialSteps, d,
+						   d <= PheromoneField.DIFFUSE2D_TOLERANCE ? "ok" : "TOO BIG" );
+	}
+
+	/**
+	 * checkFixedPointDrift
+	 * for testing...  re-run the initial pheromone steps in a double PheromoneField
+	 * and report how far our fixed point pSpace has drifted from it.
+	 * (test/AntPheromones/FixedPointDriftTest checks bounds on this.)
+	 */
+	public void checkFixedPointDrift () {
+		PheromoneField dField = new PheromoneField( diffusionK, evapRate, sizeX, sizeY );
+		double initPher = Math.min( 2.0 * maxPher * exogRate, (double) maxPher );
+		dField.putValueAt( pSourceX, pSourceY, initPher );
+		dField.update();
+		for ( int i = 0; i < initialSteps; ++i ) {
+			double v = (maxPher * exogRate) + dField.getValueAt( pSourceX, pSourceY );
+			dField.putValueAt( pSourceX, pSourceY, Math.min( v, maxPher ) );
+			dField.update();
+			dField.diffuse();
+		}
+		double dTotal = dField.getTotal();
+		System.out.printf( "--- Test: fixed point drift after %d steps: max abs diff %.3f,",
+						   initialSteps, pSpace.maxAbsDifference( dField ) );
+		System.out.printf( " total %.3f vs %.3f (%.4f%%)\n", pSpace.getTotal(), dTotal,
+						   dTotal > 0 ? 100.0 * ( pSpace.getTotal() - dTotal ) / dTotal : 0.0 );
+	}
+
 	/**
 	 * calcs max distance to source of pheromone, tells Ant class about it.
 	 */
@@ -413,12 +775,26 @@ public class Model extends ModelParameters {
 		Ant.setMaxDistanceToCenter( mdtc );
 	}
 
+	/**
+	 * createSourceDistanceTable
+	 * the source is fixed now, so (if distanceTable > 0) tabulate each cell's
+	 * distance to it and the factor an ant there multiplies its probDieCenter
+	 * by to get its probability of dying.
+	 */
+	private void createSourceDistanceTable() {
+		sourceDistances = null;
+		if ( distanceTable > 0 )
+			sourceDistances = new SourceDistanceTable( sizeX, sizeY, pSourceX, pSourceY,
+													   Ant.getMaxDistanceToCenter(), distanceTable );
+	}
+
 	/**
 	// createAntsAndAddToWorld
 	// create numAnts ants,add to antList and 
 	// add to random locations in world
 	//
-	// NB: this will be slow if numAnts ~ number of cells in world
+	// NB: with freeCellIndex=0 this will be slow if numAnts ~ number
+	//     of cells in world
 	*/
 	
 	public void createAntsAndAddToWorld ( ) {
@@ -427,9 +803,11 @@ public class Model extends ModelParameters {
 			Ant ant = createNewAnt();
 			if ( world.placeAtRandomLocation( ant ) )  // if added to world...
 				antList.add( ant );					  // add to list
-			else
+			else {
+				antPop.remove( ant );
 				System.out.printf( "\n** World too full (%d) for new ant!\n\n",
 								   antList.size() );
+			}
 		}
 
 	}
@@ -488,12 +866,12 @@ public class Model extends ModelParameters {
 	 */
 	public Ant createNewAnt( ) {
 		Ant ant = new Ant();
-		double wt = Model.getUniformDoubleFromTo(0.0,1.0) * maxAntWeight;
+		double wt = rng.nextDouble() * maxAntWeight;
 		ant.setWeight( wt );
-		// get a normal sample (repeat until in [0,1])
-		double r = getNormalDoubleProb( probRandMoveMean, probRandMoveSD );
+		// get a normal sample in [0,1]
+		double r = drawProb( probRandMoveMean, probRandMoveSD );
 		ant.setProbRandMove( r );
-		r = getNormalDoubleProb( probDieCenterMean, probDieCenterSD );
+		r = drawProb( probDieCenterMean, probDieCenterSD );
 		ant.setProbDieCenter( r );
 		return ant;
 	}
@@ -520,12 +898,21 @@ public class Model extends ModelParameters {
 	//       bugs could get 0 or > 1 chances per time step!
 	// rworActivationOrder  - random without replacement
 	//       bugs get exactly 1 chance per time step, in a random order
+	// parallelActivationOrder - all bugs pick their moves at once (on
+	//       antThreads threads), then conflicts are settled by a random
+	//       priority (see ParallelActivation)
+	// tiledActivationOrder - the world is cut into tiles, colored so that
+	//       the ants in tiles of a color can all step at once (on
+	//       antThreads threads); see TileActivation
 	 */
 
 	public void step () {
 		if ( rDebug > 0 )
 			System.out.printf( "==> Model step %.0f:\n", getTickCount() );
 
+		++numSteps;
+		rng.setStream( numSteps, modelStream );  // the model's draws for this step
+
 		// Kludge for testing: remove first bug on list!
 		// removeAntFromModel( antList.get(0) );
 		
@@ -533,12 +920,19 @@ public class Model extends ModelParameters {
 
 		// diffuse() diffuses from the read matrix (T) and into write (T')
 		// *and* it then does an update(), i.e., writes T' into new read T+1
-		pSpace.diffuse();
+		// diffuseAndReduce() also sums T' in the same pass, so calcStats
+		// gets totalPheromone without another sweep of the pSpace.
+		if ( fusedPherKernel == 1 )
+			pSpace.diffuseAndReduce();
+		else
+			pSpace.diffuse();
+		pSpace.refreshGhosts();  // the ants read pSpace through its ghost border
+		if ( senseMaxFilter != null )
+			senseMaxFilter.build( pSpace );  // max pheromone each ant can see
 		
 		activateAntsToTakeSteps();
 		
-		for ( Ant ant : antList )   // each agents gets older
-			ant.incrementAge(1);
+		antPop.incrementAges( 1 );   // each agents gets older
 
 		injectExogenousPheromoneAndUpdate();
 		
@@ -559,8 +953,13 @@ public class Model extends ModelParameters {
 	// offspring gets parent's probRandomMomve + G(0,probRandomMoveSD)
 	// add to edges of world.  for now: just add to X=0 edge!
 	// if added ok, also add to antList.
+	// with batchOffspring 1, generateNewAntsBatch does them all at once.
 	 */
 	public void generateNewAnts () {
+		if ( batchOffspring == 1 ) {
+			generateNewAntsBatch();
+			return;
+		}
 
 		for ( int i = antList.size(); i < numAnts; ++i ) {
 			Ant offspring = createNewAnt();
@@ -572,6 +971,7 @@ public class Model extends ModelParameters {
 			if ( !addAntToRandomEdge( offspring ) ) {
 				System.err.printf( "==> step %.0f: couldn't find place on edge for new bug!\n",
 								   getTickCount() );
+				antPop.remove( offspring );
 				break;
 			}
 			antList.add( offspring );
@@ -582,6 +982,82 @@ public class Model extends ModelParameters {
 		
 	}
 
+	/**
+	 * generateNewAntsBatch
+	 * add all the bugs needed to get back to numAnts at once, as arrays:
+	 * - take that many empty edge cells (or as many as are left),
+	 * - run all their parents' tournaments, among the bugs there were at
+	 *   the start of the step (so a new bug isn't a parent this step),
+	 * - draw all the weights, then mutate all the probDieCenters and
+	 *   all the probRandMoves,
+	 * - make the bugs, and add them to the world and antList.
+	 * If no bugs are left to be parents, the new ones' probs are drawn
+	 * as for the initial bugs.
+	 * Each bug gets the same kinds of draws as in generateNewAnts, but
+	 * in a different order, so the results aren't the same.
+	 * The cells come from the world's edge index, which with edgePolicy 0
+	 * is of the top and left edges (see worldEdgePolicy).
+	 */
+	public void generateNewAntsBatch () {
+		int need = numAnts - antList.size();
+		if ( need <= 0 )
+			return;
+		if ( newCells.length < need ) {
+			int n = Math.max( need, 2 * newCells.length );
+			newCells = new int[n];
+			newWeight = new double[n];
+			newProbDieCenter = new double[n];
+			newProbRandMove = new double[n];
+		}
+
+		int n = world.reserveRandomEdgeCells( need, newCells );
+		if ( n < need )
+			System.err.printf( "==> step %.0f: couldn't find place on edge for %d new bugs!\n",
+							   getTickCount(), need - n );
+
+		for ( int i = 0; i < n; ++i )
+			newWeight[i] = rng.nextDouble() * maxAntWeight;
+		if ( antList.size() > 0 ) {
+			newParents = tournament.selectParents( rng, antList, n, tournamentSize,
+												   bestWinsProb, newParents );
+			for ( int i = 0; i < n; ++i ) {
+				Ant parent = antList.get( newParents[i] );
+				newProbDieCenter[i] = parent.getProbDieCenter();
+				newProbRandMove[i] = parent.getProbRandMove();
+			}
+			for ( int i = 0; i < n; ++i )
+				newProbDieCenter[i] = mutateProb( newProbDieCenter[i], probDieCenterSD,
+												  "probDieCenter", probDieCenterMutSD );
+			for ( int i = 0; i < n; ++i )
+				newProbRandMove[i] = mutateProb( newProbRandMove[i], probRandMoveSD,
+												 "probRandMove", probRandMoveMutSD );
+		}
+		else {
+			for ( int i = 0; i < n; ++i )
+				newProbRandMove[i] = drawProb( probRandMoveMean, probRandMoveSD );
+			for ( int i = 0; i < n; ++i )
+				newProbDieCenter[i] = drawProb( probDieCenterMean, probDieCenterSD );
+		}
+
+		// make the bugs, growing the population and list just once
+		antPop.ensureCapacity( antPop.size() + n );
+		antList.ensureCapacity( antList.size() + n );
+		int sizeX = world.getSizeX();
+		for ( int i = 0; i < n; ++i ) {
+			Ant offspring = new Ant();
+			int k = offspring.index, x = newCells[i] % sizeX, y = newCells[i] / sizeX;
+			antPop.weight[k] = newWeight[i];
+			antPop.probDieCenter[k] = newProbDieCenter[i];
+			antPop.probRandMove[k] = newProbRandMove[i];
+			antPop.x[k] = x;
+			antPop.y[k] = y;
+			world.putObjectAt( x, y, offspring );
+			antList.add( offspring );
+		}
+		if ( rDebug > 0 )
+			System.out.printf( "    - Added %d new bugs on the edges.\n", n );
+	}
+
 	/**
 	// add the exogenous supply.  be sure not to go over maxPher
 	// otherwise the color doesn't work right.
@@ -608,6 +1084,7 @@ public class Model extends ModelParameters {
 		if ( removeFromList )
 			antList.remove( ant );
 		world.putObjectAt( ant.getX(), ant.getY(), null );
+		antPop.remove( ant );
 		++deathsPerStep;
 	}
 	
@@ -619,99 +1096,84 @@ public class Model extends ModelParameters {
 	// then run a tournament, with higher 'fitness' winning
 	// with probability = bestWinsProb 
 	// best defined as lowest probDieCenter value
+	// (see TournamentSelector, which does this without sorting)
 	 * 
 	 * @param tournamentSize2
 	 * @return
 	 */
 	private Ant tournametnSelectParent( int tSize ) {
-		Ant winner = null;
-		ArrayList<Ant> cList = new ArrayList<Ant>();
-
-		// get the contestants (nb: some could be there twice)
-		int alistMax = antList.size() - 1;
-		for ( int i = 0; i < tSize; ++i ) {
-			cList.add (  antList.get( Model.getUniformIntFromTo( 0, alistMax ) ) );
-		}
-		Collections.sort( cList,   // sort by probDieCenter -- higher first
-			  (java.util.Comparator<? super Ant>) new ProbDieCenterComparator() );
-		
-		
-		// select a winner 
-		// go down list in fitness order, giving each a chance to win.
-		// if we get to the end with no winner, the last guy wins
-		for ( Ant candidate : cList ) {
-			if ( bestWinsProb > Model.getUniformDoubleFromTo( 0.0, 1.0 ) ) {
-				winner = candidate;
-				break;
-			}
-		}
-		if ( winner == null ) // the last wins by default!
-			winner = cList.get( cList.size()-1 );
+		// nb: some contestants could be there twice
+		Ant winner = antList.get( tournament.select( rng, antList, tSize, bestWinsProb ) );
 
-		//System.out.printf( "cList:   (winner=%.3f)\n", winner.getProbDieCenter() );
-		//for ( Ant candidate : cList ) {
-		//	System.out.printf( "cand pdc=%.3f\n", candidate.getProbDieCenter() );
-		//}
-		
-		if ( rDebug > 0 && cList.size() > 1 ) {  // only looks at top 2
+		if ( rDebug > 0 && tournament.getNumContestants() > 1 ) {  // only looks at top 2
 			System.out.printf( "tsp: %.3f > %.3f (bwp=%.2f) -> winner = %.3f.\n",
-							   cList.get(0).getProbDieCenter(),
-							   cList.get(1).getProbDieCenter(), bestWinsProb,
+							   tournament.keyOfRank( 0 ),
+							   tournament.keyOfRank( 1 ), bestWinsProb,
 							   winner.getProbDieCenter() );
 		}
 
 		return winner;
 	}
 
+	/**
+	 * drawProb
+	 * @return a draw from normal (mean, sd) in [0,1]: exactly, from the
+	 * truncated normal, if truncatedNormal is 1, else by getNormalDoubleProb
+	 * (retrying until in range, as always).
+	 */
+	public double drawProb ( double mean, double sd ) {
+		if ( truncatedNormal == 1 )
+			return TruncatedNormal.sample( rng, mean, sd, 0.0, 1.0 );
+		return getNormalDoubleProb( rng, mean, sd );
+	}
+
 	/**	 
-	 * set offspring's probDieCenter value to parent's value + mutation, ie,
-	 * add N(0,probDieCenterSD) to it, retrying until in [0,1].
+	 * set offspring's probDieCenter value to parent's value + mutation
+	 * (see mutateProb).
 	 * @param parent
 	 * @param offspring
 	 */
 	private void setOffSpringProbDieCenter(Ant parent, Ant offspring) {
-		double d = -1;
-		int numTrials = 0, maxTrials = 1024;  // just in case...
-		while ( (d < 0.0 || d > 1.0) && numTrials < maxTrials ) {  // get a legal prob
-			d = parent.getProbDieCenter();
-			d += Model.getNormalDouble( 0, probDieCenterSD );
-			++numTrials;
-		}
-		// what to do if we can't get a mutation in range:
-		// this shouldn't happen, but you never know...
-		if ( numTrials == maxTrials ) {
-			System.err.printf( "\n=>  couldn't get mutation in range.\n" );
-			System.err.printf( "  parent probDieCenter = %f.\n", parent.getProbDieCenter() );
-			System.err.printf( "  probDieCenterSD = %f \n", probDieCenterMutSD );
-			d = 1.0;
-		}
-			offspring.setProbDieCenter( d );		
+		offspring.setProbDieCenter( mutateProb( parent.getProbDieCenter(), probDieCenterSD,
+												"probDieCenter", probDieCenterMutSD ) );
 	}
 
 	/**
-	 * set offspring's probRandomMove value to parent's value + mutation, ie,
-	 * add N(0,probRandMoveSD) to it, retrying until in [0,1].
+	 * set offspring's probRandomMove value to parent's value + mutation
+	 * (see mutateProb).
 	 * @param parent
 	 * @param offspring
 	 */
 	private void setOffSpringProbRandomMove(Ant parent, Ant offspring) {
+		offspring.setProbRandMove( mutateProb( parent.getProbRandMove(), probRandMoveSD,
+											   "probRandMove", probRandMoveMutSD ) );
+	}
+
+	/**
+	 * mutateProb
+	 * @return p + N(0,sd), retrying until in [0,1] (or, if truncatedNormal
+	 * is 1, drawn from that truncated to [0,1]).
+	 * name and mutSD are for the message if it can't get one in range.
+	 */
+	private double mutateProb ( double p, double sd, String name, double mutSD ) {
+		if ( truncatedNormal == 1 )
+			return TruncatedNormal.sample( rng, p, sd, 0.0, 1.0 );
 		double d = -1;
 		int numTrials = 0, maxTrials = 1024;  // just in case...
-		
 		while ( (d < 0.0 || d > 1.0) && numTrials < maxTrials ) {  // get a legal prob
-			d = parent.getProbRandMove();
-			d += Model.getNormalDouble( 0, probRandMoveSD );
+			d = p;
+			d += rng.nextNormal( 0, sd );
 			++numTrials;
 		}
 		// what to do if we can't get a mutation in range:
 		// this shouldn't happen, but you never know...
 		if ( numTrials == maxTrials ) {
 			System.err.printf( "\n=> couldn't get mutation in range.\n" );
-			System.err.printf( "  parent probRandMove = %f.\n", parent.getProbRandMove() );
-			System.err.printf( "  probRandMoveSD = %f \n", probRandMoveMutSD );
+			System.err.printf( "  parent %s = %f.\n", name, p );
+			System.err.printf( "  %sSD = %f \n", name, mutSD );
 			d = 1.0;
 		}
-			offspring.setProbRandMove( d );		
+		return d;
 	}
 
 	/**
@@ -719,29 +1181,41 @@ public class Model extends ModelParameters {
 	// add specified bug to randomly selected cell on an "edge", 
 	// i.e, x=0 or y = 0 or x=sizeX-1 or y=sizeY-1 
 	//
-	// FOR NOW, just add to left (x=0) edge!
+	// Which edges depends on edgePolicy:
+	// 0 - (the old way) pick top (y=0) or left (x=0) edge at random, then
+	//     try up to 1024 random cells on it
+	// 1, 2, 3 - left, top and left, or all four edges; pick from the
+	//     world's index of empty cells on those edges, which only
+	//     fails if they are all full.
 	 * 
 	 * @param bug
 	 * @return
 	 */
 	
 	public boolean addAntToRandomEdge ( Ant bug ) {
+		if ( edgePolicy != GridWorld.noEdgeIndex ) {
+			if ( world.placeAtRandomEdge( bug ) )
+				return true;
+			System.err.printf( "\n ==> addBugToRandomEdge -- all edge cells are occupied!\n\n" );
+			return false;
+		}
+
 		int randomX = 0, randomY =  0, maxTrials = 1024, nmTrials = 0;
 		boolean added = true; // lets be hopeful!
 
 		boolean top = false;
-		if  ( Model.getUniformDoubleFromTo( 0, 1 ) > 0.5 ) {
+		if  ( rng.nextDoubleFromTo( 0, 1 ) > 0.5 ) {
 			top = true;
 		}
 			
 	   	// find a random place that is un-occupied on left edge
 	   	do {
 	   		if ( top )
-			    randomX =  getUniformIntFromTo( 0, world.getSizeX () - 1 );
+			    randomX =  rng.nextIntFromTo( 0, world.getSizeX () - 1 );
 	   		else
-	   			randomY =  getUniformIntFromTo( 0, world.getSizeY () - 1 );
+	   			randomY =  rng.nextIntFromTo( 0, world.getSizeY () - 1 );
 			++nmTrials;
-		} while ( world.getObjectAt( randomX, randomY ) != null && nmTrials < maxTrials );
+		} while ( !world.isOpen( randomX, randomY ) && nmTrials < maxTrials );
 
 		if ( nmTrials < maxTrials ) {
 			world.putObjectAt( randomX, randomY, bug );
@@ -767,7 +1241,7 @@ public class Model extends ModelParameters {
 			// now the bugs get a chance to move around
 			for ( int i = 0; i < antList.size(); i++ ) {
 				Ant aBug = antList.get (i);
-				live = aBug.step ();
+				live = stepAnt( aBug, 0 );
 				if ( !live ) {  // now we kludge a bit to remove from list properly!
 					removeAntFromModel ( aBug, true );
 					--i;       // THE KLUDGE -- so as not to skip a bug on the list!
@@ -776,26 +1250,117 @@ public class Model extends ModelParameters {
 		}
 		else if (  activationOrder == rwrActivationOrder ) {
 			for ( int i = 0; i < antList.size(); i++ ) {
-				int r = getUniformIntFromTo( 0, antList.size()-1 );
+				int r = rng.nextIntFromTo( 0, antList.size()-1 );
 				Ant aBug = antList.get ( r );
-				if ( !aBug.step() ) {   // note we don't need a kludge, since we pick randomly
+				if ( !stepAnt( aBug, i ) ) {   // note we don't need a kludge, since we pick randomly
 					removeAntFromModel ( aBug, true );
 				}
 			}
 		}
 		else if (  activationOrder == rworActivationOrder ) {
 			// here we shuffle the list, then process in order
-			SimUtilities.shuffle( antList, uchicago.src.sim.util.Random.uniform );
+			shuffleAntList();
 			Iterator<Ant> bugIter = antList.iterator();
 			while ( bugIter.hasNext() ) {
 				Ant aBug = bugIter.next();
-				if ( !aBug.step() ) { 
+				if ( !stepAnt( aBug, 0 ) ) { 
 					bugIter.remove();  // remove it from list
 					removeAntFromModel ( aBug, false );  // false -> its already gone from list
 				}
 			}
 		}
+		else if (  activationOrder == parallelActivationOrder ) {
+			if ( parallelActivation == null )
+				parallelActivation = new ParallelActivation( this, antThreads );
+			parallelActivation.activate( antList, newStepKey() );
+		}
+		else if (  activationOrder == tiledActivationOrder ) {
+			if ( tileActivation == null )
+				tileActivation = new TileActivation( this, tileSize, antThreads );
+			tileActivation.activate( antList, newStepKey() );
+		}
+
+	}
+
+	/**
+	 * stepAnt
+	 * aBug.step(), but with the counter source, the ant draws from its own
+	 * stream for the step (sub-stream k, for ants stepped more than once).
+	 */
+	protected boolean stepAnt ( Ant aBug, int k ) {
+		if ( antStream == null )
+			return aBug.step();
+		antStream.setStream( numSteps, aBug.getId() + ( (long) k << 32 ) );
+		return aBug.step( antScratch );
+	}
+
+	/**
+	 * shuffleAntList
+	 * put antList in random order.  With the Colt source, the same way as
+	 * ever; otherwise a Fisher-Yates shuffle drawing from rng.
+	 */
+	protected void shuffleAntList () {
+		if ( randomSource == coltRandomSource ) {
+			SimUtilities.shuffle( antList, uchicago.src.sim.util.Random.uniform );
+			return;
+		}
+		for ( int i = antList.size() - 1; i > 0; --i ) {
+			int j = rng.nextIntFromTo( 0, i );
+			antList.set( i, antList.set( j, antList.get( i ) ) );
+		}
+	}
+
+	/**
+	 * newStepKey
+	 * @return the key for the ants' streams this step (see ParallelActivation):
+	 * the step number with the counter source, else one draw from rng
+	 */
+	public long newStepKey () {
+		if ( randomSource == counterRandomSource )
+			return numSteps;
+		return (long) ( rng.nextDouble() * 0x1.0p53 );
+	}
+
+	/**
+	 * newAntStream
+	 * @return a stream an ant can draw from on any thread, for newStepKey keys
+	 */
+	public RandomSource newAntStream () {
+		if ( randomSource == counterRandomSource )
+			return new CounterRandomSource( getSeed() );
+		return new SplitMix64( 0L );
+	}
 
+	/**
+	 * setupRandomSource
+	 * make the model's RandomSource, and give it to the world and ants.
+	 * Draws made while building the model are step 0's.
+	 */
+	protected void setupRandomSource () {
+		numSteps = 0;
+		if ( randomSource == counterRandomSource ) {
+			rng = new CounterRandomSource( getSeed() );
+			antStream = new CounterRandomSource( getSeed() );
+			antScratch = new Ant.Scratch( antStream );
+		}
+		else if ( randomSource == xoshiroRandomSource ) {
+			rng = new XoshiroRandomSource( getSeed() );
+			antStream = null;  // ants stepped in order draw from rng too
+		}
+		else {
+			rng = new ColtRandomSource();
+			antStream = null;
+		}
+		rng.setStream( numSteps, modelStream );
+		world.setRandomSource( rng );
+		Ant.setRandomSource( rng );
+		// their threads' streams come from newAntStream
+		if ( parallelActivation != null )
+			parallelActivation.shutdown();
+		parallelActivation = null;
+		if ( tileActivation != null )
+			tileActivation.shutdown();
+		tileActivation = null;
 	}
 
 	/**
@@ -865,10 +1430,14 @@ public class Model extends ModelParameters {
 		antPopAvgX = 0.0;  avgProbRandomMove = 0.0; avgProbDieCenter = 0.0;
 
 		// average X is sort of silly...
-		for ( Ant ant : antList ) {
-			antPopAvgX += ant.getX();
-			avgProbRandomMove += ant.getProbRandMove();
-			avgProbDieCenter += ant.getProbDieCenter();
+		// NB: these loops go in antList order, so the sums are added up
+		// in the same order as ever, but read antPop's arrays directly.
+		int[] antX = antPop.x, antY = antPop.y;
+		for ( int j = 0, n = antList.size(); j < n; ++j ) {
+			int i = antList.get( j ).index;
+			antPopAvgX += antX[i];
+			avgProbRandomMove += antPop.probRandMove[i];
+			avgProbDieCenter += antPop.probDieCenter[i];
 		}
 		if ( antList.size() > 1 ) {
 			antPopAvgX /= antList.size();
@@ -881,18 +1450,17 @@ public class Model extends ModelParameters {
 		avgDStats.addValue( antPopAvgDistanceFromSource );
 		
 		// get total pheromone in pSpace
-		totalPheromone = 0;
-		for ( int x = 0; x < sizeX; ++x ) {
-			for ( int y = 0; y < sizeY; ++y ) {
-				totalPheromone += pSpace.getValueAt( x, y );
-			}
-		}
+		totalPheromone = pSpace.getTotal();
 
-		// calc avg number of neighbors each bug has, 1 and 2 away
+		// calc avg number of neighbors each bug has, 1 and 2 away.
+		// one pass to make the world's summed-area table, then each
+		// count is just four reads from it.
 		double totalNbor1Count = 0.0, totalNbor2Count = 0.0;
-		for ( Ant aBug : antList ) {
-			totalNbor1Count += aBug.getNumberOfNeighbors( 1 );
-			totalNbor2Count += aBug.getNumberOfNeighbors( 2 );
+		world.updateNeighborTable();
+		for ( int j = 0, n = antList.size(); j < n; ++j ) {
+			int i = antList.get( j ).index;
+			totalNbor1Count += world.countNeighborsFromTable( antX[i], antY[i], 1, 1 );
+			totalNbor2Count += world.countNeighborsFromTable( antX[i], antY[i], 2, 2 );
 		}
 	    if ( antList.size() > 1 ) {
 			averageBugNbor1Count = totalNbor1Count / antList.size();
@@ -902,9 +1470,16 @@ public class Model extends ModelParameters {
 
 	public double calcAvgAntPopDistanceTo ( int x, int y ) {
 		double avgD = 0.0, distance, bugX, bugY, deltaX, deltaY;
-		for ( Ant bug : antList ) {
-			bugX = (double) bug.getX();
-			bugY = (double) bug.getY();
+		if ( sourceDistances != null && x == pSourceX && y == pSourceY ) {
+			for ( int j = 0, n = antList.size(); j < n; ++j ) {
+				int i = antList.get( j ).index;
+				avgD += sourceDistances.getDistance( antPop.x[i], antPop.y[i] );
+			}
+		}
+		else for ( int j = 0, n = antList.size(); j < n; ++j ) {
+			int i = antList.get( j ).index;
+			bugX = (double) antPop.x[i];
+			bugY = (double) antPop.y[i];
 			deltaX = bugX - x;
 			deltaY = bugY - y;
 			distance = Math.sqrt( (deltaX*deltaX) + (deltaY*deltaY) );
@@ -948,6 +1523,8 @@ public class Model extends ModelParameters {
 	 * @return
 	 */
 	double calcDistanceToSource ( Ant aBug ) {
+		if ( sourceDistances != null )
+			return sourceDistances.getDistance( aBug.getX(), aBug.getY() );
 		double bugX, bugY, deltaX, deltaY, distance;
 		bugX = (double) aBug.getX();
 		bugY = (double) aBug.getY();
@@ -957,6 +1534,21 @@ public class Model extends ModelParameters {
 		return distance;
 	}
 
+	/**
+	// calcDeathScale aBug
+	// returns 1 - d/D, where d is the bug's distance to the source and
+	// D = maxDistanceToCenter, ie what the bug's probDieCenter is multiplied
+	// by to get its probability of dying (see Ant.amIStillAlive)
+	 * 
+	 * @param aBug
+	 * @return
+	 */
+	double calcDeathScale ( Ant aBug ) {
+		if ( sourceDistances != null )
+			return sourceDistances.getDeathScale( aBug.getX(), aBug.getY() );
+		return 1.0 - ( calcDistanceToSource( aBug ) / Ant.getMaxDistanceToCenter() );
+	}
+
 	/**
 	// resetBugProbRandMove
 	// reassign probRandMove value to bugs, using values
@@ -965,7 +1557,7 @@ public class Model extends ModelParameters {
 	 */
 	public void resetBugProbRandMove () {
 		for ( Ant aBug : antList ) {
-			double r = getNormalDoubleProb( probRandMoveMean, probRandMoveSD );
+			double r = drawProb( probRandMoveMean, probRandMoveSD );
 			aBug.setProbRandMove( r );
 		}
 	}
@@ -1012,21 +1604,6 @@ public class Model extends ModelParameters {
 			return 0;
 		}
 	}
-	/**
-	 *  we want to sort ants so that lower probDieCenter is first,
-	 *  because lower probDieCenter is "better" (more fit)
-	 */
-	private class ProbDieCenterComparator implements Comparator<Ant> {
-		public  int compare ( Ant bug1, Ant bug2 ) {
-			double d1 = ( (Ant) bug1 ).getProbDieCenter();
-			double d2 = ( (Ant) bug2 ).getProbDieCenter();
-			if ( d1 > d2 )    // d1 bigger, so it should sort after d2
-				return 1;
-			else if ( d1 < d2 )
-				return -1;
-			return 0;
-		}
-	}
 
 	//////////////////////////////////////////////////////////////////////////////////
 	// printProjectHelp
@@ -1077,9 +1654,34 @@ public class Model extends ModelParameters {
 		System.out.printf( "  diffusionK - 0 means none, 1 means max.\n" );
 		System.out.printf( "  evapRate - 1 means none (!), 0 means max. (takes just 0.95...)\n" );
 		System.out.printf( "  exogRate - rate of injection of exogenous pheromone. 1 = max.\n" );
+		System.out.printf( "  diffusionThreads - threads used to diffuse (same results for any #).\n" );
+		System.out.printf( "  diffusionKernel - 0=scalar, 1=row (SIMD friendly), 2=row with the\n" );
+		System.out.printf( "                    Vector API (needs src-vector, falls back to 1);\n" );
+		System.out.printf( "                    all give the same results.\n" );
+		System.out.printf( "  pherActiveRegion - 1=only diffuse/sum the box of non-zero cells\n" );
+		System.out.printf( "  pherEpsilon - with pherActiveRegion=1, pheromone below this is set to 0.\n" );
+		System.out.printf( "  pherFixedPoint - 0=doubles; 16-bit cells, rounded 1=nearest, 2=stochastic\n" );
+		System.out.printf( "                   NB: 1 is lossy, eg ~3%% of the pheromone gone in 500\n" );
+		System.out.printf( "                   steps with evaporation; 2 keeps the total to ~0.01%%\n" );
+		System.out.printf( "  fusedPherKernel - 1=diffuse and total the pheromone in one pass\n" );
+		System.out.printf( "  ghostWidth - width of wrapped border kept around world, pSpace (0=none)\n" );
+		System.out.printf( "  freeCellIndex - 1=place ants/food via an index of empty cells (any density)\n" );
+		System.out.printf( "                  0=rejection sample random cells (slow when crowded)\n" );
+		System.out.printf( "  distanceTable - per cell distance to source, death factor tables:\n" );
+		System.out.printf( "                  1=doubles (same results), 2=floats, 0=none (sqrt per ant)\n" );
+		System.out.printf( "  senseRadius - how far ants look for (and move to) more pheromone;\n" );
+		System.out.printf( "                > 1 uses a per-step window max filter over pSpace\n" );
+		System.out.printf( "  edgePolicy - where new ants go: 1=left edge, 2=top/left, 3=all four;\n" );
+		System.out.printf( "               0=old way (top or left, up to 1024 random tries)\n" );
 
 		System.out.printf( "\n" );
-		System.out.printf( "  activationOrder   0=fixed; 1=RWR, 2=RWOR \n" );
+		System.out.printf( "  activationOrder   0=fixed; 1=RWR, 2=RWOR, 3=parallel propose/commit,\n" );
+		System.out.printf( "                    4=tiles colored like a checkerboard\n" );
+		System.out.printf( "  antThreads - threads ants step on with 3 or 4 (same results for any #)\n" );
+		System.out.printf( "  tileSize - min side of the tiles with 4 (at least 2*senseRadius)\n" );
+		System.out.printf( "  randomSource - 0=Repast's shared generators (as always),\n" );
+		System.out.printf( "                 1=counter-based (Philox) streams per ant per step,\n" );
+		System.out.printf( "                 2=xoshiro256++ filling buffers in bulk (fastest)\n" );
 		System.out.printf( "  probRandomMoveMean -- init probability a bug moves randomly drawn from\n" );
 		System.out.printf( "  probRandomMoveSD        this distribution\n" );
 		System.out.printf( "  randomMoveMethod  - 0=unbiased choice of open neighbors; 1=pick first\n" );
@@ -1091,6 +1693,14 @@ public class Model extends ModelParameters {
 		System.out.printf( "\n" );
 		System.out.printf( "  probDieCenterMutSD\n" );
 		System.out.printf( "  probRandomMoveSD\n" );
+		System.out.printf( "  truncatedNormal - 1=draw initial and mutated probs from the normal\n" );
+		System.out.printf( "                    truncated to [0,1] exactly, in a few draws.\n" );
+		System.out.printf( "                    NB: results differ from 0 (see TruncatedNormal)\n" );
+		System.out.printf( "                    0=redraw until in [0,1] (the old way)\n" );
+		System.out.printf( "  batchOffspring - 1=make each step's new ants all at once, parents\n" );
+		System.out.printf( "                   from the ants at the start of the step (with\n" );
+		System.out.printf( "                   edgePolicy 0, on the top/left edges, as 2);\n" );
+		System.out.printf( "                   0=one at a time (the old way)\n" );
 		System.out.printf( "\n" );
 		
 		System.out.printf( "\n" );
@@ -1102,6 +1712,8 @@ public class Model extends ModelParameters {
 		System.out.printf( "\n" );
 		System.out.printf( "  pherReportFileName - if not null, writes pheromone values\n" );
 		System.out.printf( "  pherReportFrequency - how often it writes the values\n" );
+		System.out.printf( "  pherCacheDirName - if not null, cache the pSpace after initialSteps\n" );
+		System.out.printf( "                     there, and reuse it in runs with the same parameters\n" );
 		System.out.printf( "\n" );
 		
 		
@@ -395,6 +395,24 @@ public class ModelParameters extends SimModelImpl {
 		return d;
 	}
 
+	/**
+	 * @param r
+	 * @param mean
+	 * @param sd
+	 * @return double in [0,1] drawn from normal (mean, sd) from r,
+	 * looping like getNormalDoubleProb( mean, sd )
+	 */
+	static public double getNormalDoubleProb ( RandomSource r, double mean, double sd ) {
+		if ( mean < 0 || mean > 1 ) {
+			System.err.printf ( "\ngetNormalDoubleProb: Invalid value set for normal distribution mean\n\n" );
+			return -1;
+		}
+		double d = r.nextNormal( mean, sd );
+		while ( d < 0 || d > 1 )
+			d = r.nextNormal( mean, sd );
+		return d;
+	}
+
 	public void setRngSeed ( long i ) {
 		System.out.println( "setRngSeed ( " + i + " ) called" );
 		setSeed( i );
@@ -0,0 +1,190 @@
+package AntPheromones;
+
+/**
+ParallelActivation
+
+Activates all the ants in two phases, so the first can use many threads:
+* propose -- every ant works out, with Ant.proposeStep, whether it dies
+  and which cell it wants, against the world as it was at the start of
+  the step.  Nothing is changed, so the ants are split into ranges that
+  are done on a ForkJoin pool.
+* commit -- one thread gives each wanted cell to the ant wanting it with
+  the highest priority (a random key per ant per step, ties going to
+  the lower id), moves the winners, and removes the dead.  The others
+  stay put.
+Every cell wanted was open at the start of the step, and each has one
+winner, so all the winners' moves go through, in any order.
+
+Each ant draws from its own stream (see Model.newAntStream), keyed by
+the step (Model.newStepKey) and the ant's id, and its priority is the
+first draw.  So the moves and deaths depend only on the seed, not on
+how many threads there are or which one did which ant.
+
+NB: unlike the sequential orders, an ant doesn't see where the ants
+activated before it moved to this step -- it can't take a cell another
+ant is leaving, and ants that lose a cell don't try again.
+
+*/
+
+import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+public class ParallelActivation {
+
+	public static final int stay = -1;		// target of an ant that stays put
+	public static final int died = -2;		// target of an ant that dies
+
+	protected Model			model;
+	protected TorusWorld	world;
+	protected int			numThreads = 1;
+	protected ForkJoinPool	pool;			// created when numThreads > 1
+
+	protected Ant[]			ants = new Ant[0];	// this step's ants
+	protected int[]			target = new int[0];	// cell each wants, or stay or died
+	protected long[]		priority = new long[0];	// who gets a wanted cell
+	protected int[]			claimant;		// per cell, ant with top claim, or -1
+	protected long			stepKey;
+
+	// minimum ants per task when splitting the propose phase
+	protected static final int minRange = 256;
+
+	// each thread's stream and buffers for stepping ants
+	protected ThreadLocal<Ant.Scratch> scratches = new ThreadLocal<Ant.Scratch>() {
+		protected Ant.Scratch initialValue () { return new Ant.Scratch( model.newAntStream() ); }
+	};
+
+	public ParallelActivation ( Model model, int numThreads ) {
+		this.model = model;
+		setNumThreads( numThreads );
+	}
+
+	public int getNumThreads () { return numThreads; }
+	/**
+	 * setNumThreads
+	 * set how many threads propose; 1 (or less) means don't use the pool.
+	 */
+	public void setNumThreads ( int n ) {
+		n = Math.max( 1, n );
+		if ( n != numThreads && pool != null ) {
+			pool.shutdown();
+			pool = null;
+		}
+		numThreads = n;
+		if ( numThreads > 1 && pool == null )
+			pool = new ForkJoinPool( numThreads );
+	}
+
+	public void shutdown () {
+		if ( pool != null )
+			pool.shutdown();
+		pool = null;
+	}
+
+	/**
+	 * activate
+	 * step all the ants on antList, with stepKey keying their streams.
+	 * Dead ants are removed with model.removeAntFromModel, and from
+	 * antList, which otherwise keeps its order.
+	 */
+	public void activate ( ArrayList<Ant> antList, long stepKey ) {
+		int n = antList.size();
+		this.stepKey = stepKey;
+		world = Ant.world;
+		int numCells = world.getSizeX() * world.getSizeY();
+		if ( claimant == null || claimant.length != numCells ) {
+			claimant = new int[numCells];
+			java.util.Arrays.fill( claimant, -1 );
+		}
+		if ( ants.length < n ) {
+			ants = new Ant[n];
+			target = new int[n];
+			priority = new long[n];
+		}
+		for ( int i = 0; i < n; ++i )
+			ants[i] = antList.get( i );
+
+		// propose
+		if ( numThreads > 1 && n >= 2 * minRange )
+			pool.invoke( new ProposeRange( 0, n, Math.min( numThreads, n / minRange ) ) );
+		else
+			propose( 0, n );
+
+		// resolve: each wanted cell goes to its highest priority claimant
+		for ( int i = 0; i < n; ++i ) {
+			int c = target[i];
+			if ( c >= 0 ) {
+				int j = claimant[c];
+				if ( j < 0 || priority[i] > priority[j]
+					 || ( priority[i] == priority[j] && ants[i].getId() < ants[j].getId() ) )
+					claimant[c] = i;
+			}
+		}
+
+		// commit
+		int sizeX = world.getSizeX();
+		for ( int i = 0; i < n; ++i ) {
+			int c = target[i];
+			if ( c >= 0 && claimant[c] == i )
+				world.moveObjectTo( ants[i], c % sizeX, c / sizeX );
+		}
+		int kept = 0;
+		for ( int i = 0; i < n; ++i ) {
+			int c = target[i];
+			if ( c >= 0 )
+				claimant[c] = -1;
+			if ( c == died ) {
+				ants[i].setLive( false );
+				model.removeAntFromModel( ants[i], false );
+			}
+			else
+				antList.set( kept++, ants[i] );
+			ants[i] = null;
+		}
+		if ( kept < n )
+			antList.subList( kept, n ).clear();
+	}
+
+	/**
+	 * propose
+	 * have ants from..to-1 propose their steps, into target and priority.
+	 */
+	protected void propose ( int from, int to ) {
+		Ant.Scratch s = scratches.get();
+		int sizeX = world.getSizeX();
+		for ( int i = from; i < to; ++i ) {
+			Ant ant = ants[i];
+			s.random.setStream( stepKey, ant.getId() );
+			priority[i] = s.random.nextLong();
+			if ( !ant.proposeStep( s ) )
+				target[i] = died;
+			else if ( ant.pickedX == ant.getX() && ant.pickedY == ant.getY() )
+				target[i] = stay;
+			else
+				target[i] = ant.pickedY * sizeX + ant.pickedX;
+		}
+	}
+
+	protected class ProposeRange extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		final int from, to, numParts;
+
+		ProposeRange ( int from, int to, int numParts ) {
+			this.from = from;
+			this.to = to;
+			this.numParts = numParts;
+		}
+
+		protected void compute () {
+			if ( numParts <= 1 ) {
+				propose( from, to );
+				return;
+			}
+			int lowParts = numParts / 2;
+			int mid = from + (int) ( (long) ( to - from ) * lowParts / numParts );
+			invokeAll( new ProposeRange( from, mid, lowParts ),
+					   new ProposeRange( mid, to, numParts - lowParts ) );
+		}
+	}
+
+}
@@ -0,0 +1,1203 @@
+package AntPheromones;
+
+/**
+PheromoneField
+
+A 2D toroidal field of double values that diffuse and evaporate,
+used in place of the Repast Diffuse2D for the pheromone space.
+
+It keeps the Diffuse2D semantics the model was written against:
+* getValueAt reads the "read" copy of the field;
+* putValueAt writes to the "write" copy, which becomes visible
+  only after update() is called;
+* diffuse() computes the new field from the read copy into the
+  write copy, and then does an update().
+
+The diffusion rule is the Swarm/Repast one: each cell's new value is
+       evapRate * ( v + diffusionK * ( nghAvg - v ) )
+where v is the cell's current value and nghAvg is the weighted
+average of its Moore neighbors, orthogonal neighbors weighted 4
+and diagonal neighbors weighted 1 (so the weights sum to 20).
+It should agree with Diffuse2D to within DIFFUSE2D_TOLERANCE
+(relative), the only difference being the order of the additions;
+test/AntPheromones/Diffuse2DTest checks this when run with the Repast
+jar.
+
+Storage is two flat double[] arrays indexed y*sizeX + x, so a "row"
+is all the cells with the same y value.  The write copy is only a
+scratch buffer for diffuse(): values put with putValueAt are kept
+in a short pending list and applied to the read copy by update(),
+so update() costs O(number of puts) instead of a full copy.
+
+With setNumThreads(n), n > 1, diffuse() splits the torus into bands
+of rows and diffuses the bands on a ForkJoin pool.  Each band reads
+the row above and below it (its halo) straight from the shared read
+copy, and writes only its own rows, so every cell is computed by the
+same expression as in the single-threaded kernel and the results are
+bit-identical whatever the thread count.
+
+setKernel picks the inner loop used for each row:
+* scalarKernel works out the wrapped left/right neighbors cell by cell;
+* rowKernel runs the interior columns 1..sizeX-2 as one straight loop
+  over contiguous slices of the up, own and down rows, with no branches
+  or wraparound.  The two wraparound columns are done after, as a scalar
+  tail.  Each cell is still computed by the same expression, so both
+  kernels give bit-identical results.  NB: HotSpot (JDK 17) does NOT
+  turn this loop into SIMD code -- it runs the same with its superword
+  pass turned off (-XX:-UseSuperWord), presumably as it can't rule out
+  src and dst being the same array -- it is just cheaper than the
+  scalar kernel's per-cell wraparound tests.
+* vectorKernel is the rowKernel with the interior loop done by
+  VectorInteriorKernel, explicitly in SIMD lanes with the Vector API
+  (bit-identical too).  That class and the jdk.incubator.vector module
+  are optional: if either is missing, setKernel says so and uses the
+  rowKernel.
+
+With setActiveRegion(true) the field keeps track of a bounding box
+(for each of the two copies) outside of which every cell is 0.
+diffuse() then only computes the box grown by one cell, and getTotal()
+only sums inside the box.  After each diffuse() values below the
+flushEpsilon are set to 0 and the box is refit to the non-zero cells,
+so it can shrink again as pheromone evaporates.  With flushEpsilon = 0
+the results are the same as sweeping the whole field.
+
+diffuseAndReduce() is diffuse() fused with the reductions the model
+wants each step: as each row is diffused, its sum and max are taken
+while it is still in cache, so getTotal(), getMax() and getRowSum()
+need no further sweep.  update() adjusts those for the cells it puts,
+so the exogenous injection afterwards costs only the one cell.
+
+diffuseSteps(n) does n diffusions (optionally with the model's exogenous
+injection before each one) using temporal blocking: each tile of the
+field is taken through several steps while it is in cache, with the
+same results as n calls to diffuse().
+
+setGhostWidth(g), g > 0, keeps a second, padded copy of the read copy
+with a ghost border g cells wide on every side holding the wrapped-around
+values, so a stencil of radius up to g around any cell can be read with
+straight-line indexing (see ghostIndex) and no xnorm/ynorm.  The padded
+copy is only brought up to date by refreshGhosts(), which the model
+calls once per step after diffusing.  That does nothing if the field
+hasn't changed since the last refresh, and with the active region it
+only copies the cells that were in the box then or are in it now (the
+rest are 0 in both), with their images in the border.  The padded copy
+is kept in the field's own storage type (see readArray), so for the
+fixed point field it is chars (getGhostFixed), not doubles.
+
+saveTo/loadFrom write and read the read copy as a binary file: a short
+header (magic number, a key string describing how the field was made,
+size, number of diffusions) followed by the cells as doubles, which
+loadFrom maps into memory rather than reading through a stream.
+
+*/
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+public class PheromoneField {
+
+	/** max relative difference from Diffuse2D output we promise. */
+	public static final double DIFFUSE2D_TOLERANCE = 1.0e-12;
+
+	public int			sizeX, sizeY;
+	public double		diffusionK;		// 0 means none, 1 means max
+	public double		evapRate;		// 1 means none (!), 0 means max
+
+	protected double[]	readCells;		// the field as seen by getValueAt
+	protected double[]	writeCells;		// scratch copy diffuse() writes into
+
+	public static final int scalarKernel = 0;	// cell by cell, wrapping each neighbor
+	public static final int rowKernel = 1;		// straight interior loop + scalar tail
+	public static final int vectorKernel = 2;	// rowKernel, interior by the Vector API
+	protected int		kernel = scalarKernel;	// which one diffuseRows uses
+	protected InteriorKernel interior;		// for the vectorKernel, or null
+
+	protected long		numDiffusions = 0;	// number of diffuse() calls so far
+	protected long		changes = 0;		// bumped whenever the read copy changes
+
+	protected int		numThreads = 1;		// threads used by diffuse()
+	protected ForkJoinPool	pool;			// created when numThreads > 1
+
+	// tracking the box that holds all the non-zero cells (see Box)
+	protected boolean	activeRegion = false;
+	protected double	flushEpsilon = 0.0;		// values below this are set to 0
+	protected Box		readBox = new Box(), writeBox = new Box();
+	protected Box		targetBox = new Box();	// scratch, the cells diffuse() computes
+
+	// per row results of the pass that finishes each diffused row (see finishRow)
+	protected int[]		rowFirst, rowLast;	// first, last non-zero column
+	protected double[]	rowSums, rowMax;
+	protected boolean	reducing = false;	// diffuse() is filling rowSums, rowMax
+	protected boolean	reduced = false;	// rowSums, total, maxCell are current
+	protected double	total, maxCell;
+	protected boolean	maxStale = false;	// update() may have lowered maxCell
+
+	// padded copy of the read copy, with a ghost border (see refreshGhosts)
+	protected int		ghostWidth = 0;
+	protected int		ghostStride;		// row length of the padded copy
+	protected Object	ghostArray;			// the padded copy, as newGhostArray made it
+	protected double[]	ghostCells;			// ghostArray, if it is doubles
+	protected long		ghostChanges = -1;	// changes as of the last refresh
+	protected Box		ghostBox = new Box();	// the non-zero cells as of the last refresh
+	protected Box		refreshBox = new Box();	// scratch, the cells refreshGhosts copies
+
+	// values put into the write copy, waiting for update()
+	protected int		numPending = 0;
+	protected int[]		pendingIndex = new int[8];
+	protected double[]	pendingValue = new double[8];
+
+	public PheromoneField ( double diffusionK, double evapRate, int sizeX, int sizeY ) {
+		this( diffusionK, evapRate, sizeX, sizeY, true );
+	}
+
+	/**
+	 * for subclasses that store the cells some other way:
+	 * if allocateCells is false, readCells and writeCells are left null.
+	 */
+	protected PheromoneField ( double diffusionK, double evapRate, int sizeX, int sizeY,
+							   boolean allocateCells ) {
+		this.diffusionK = diffusionK;
+		this.evapRate = evapRate;
+		this.sizeX = sizeX;
+		this.sizeY = sizeY;
+		if ( allocateCells ) {
+			readCells = new double[ sizeX * sizeY ];
+			writeCells = new double[ sizeX * sizeY ];
+		}
+		rowFirst = new int[ sizeY ];
+		rowLast = new int[ sizeY ];
+		rowSums = new double[ sizeY ];
+		rowMax = new double[ sizeY ];
+	}
+
+	////////////////////////////////////////////////////////////////////////////
+	// setters and getters
+	//
+	public int getSizeX () { return sizeX; }
+	public int getSizeY () { return sizeY; }
+	public double getDiffusionConstant () { return diffusionK; }
+	public void setDiffusionConstant ( double d ) { diffusionK = d; }
+	public double getEvaporationRate () { return evapRate; }
+	public void setEvaporationRate ( double d ) { evapRate = d; }
+	public int getKernel () { return kernel; }
+	public void setKernel ( int k ) {
+		if ( k != scalarKernel && k != rowKernel && k != vectorKernel ) {
+			System.err.printf( "\nPheromoneField: Illegal kernel %d, using scalar!\n", k );
+			k = scalarKernel;
+		}
+		interior = null;
+		if ( k == vectorKernel ) {
+			interior = loadVectorKernel();
+			if ( interior == null ) {
+				System.err.printf( "\nPheromoneField: no Vector API kernel (needs src-vector and"
+								   + " --add-modules jdk.incubator.vector), using row kernel.\n" );
+				k = rowKernel;
+			}
+		}
+		kernel = k;
+	}
+
+	/**
+	 * loadVectorKernel
+	 * @return a VectorInteriorKernel, or null if that class wasn't compiled
+	 * in or the jdk.incubator.vector module isn't there.
+	 */
+	protected static InteriorKernel loadVectorKernel () {
+		try {
+			Class<?> c = Class.forName( "AntPheromones.VectorInteriorKernel" );
+			return (InteriorKernel) c.getDeclaredConstructor().newInstance();
+		}
+		catch ( Exception ex ) {		// not compiled in
+			return null;
+		}
+		catch ( LinkageError err ) {	// the module is missing
+			return null;
+		}
+	}
+	public long getNumDiffusions () { return numDiffusions; }
+	public int getNumThreads () { return numThreads; }
+	/**
+	 * setNumThreads
+	 * set how many threads diffuse() uses; 1 (or less) means don't use the pool.
+	 */
+	public void setNumThreads ( int n ) {
+		n = Math.max( 1, n );
+		if ( n != numThreads && pool != null ) {
+			pool.shutdown();
+			pool = null;
+		}
+		numThreads = n;
+		if ( numThreads > 1 && pool == null )
+			pool = new ForkJoinPool( numThreads );
+	}
+
+	/**
+	 * shutdown
+	 * let go of the diffusion threads, if any (eg when the model is reset).
+	 */
+	public void shutdown () {
+		if ( pool != null )
+			pool.shutdown();
+		pool = null;
+		numThreads = 1;
+	}
+
+	/**
+	 * xnorm
+	 * return torus-normalized values for raw x value.
+	 * @param x
+	 * @return int
+	 */
+	public int xnorm ( int x ) {
+		if ( x > sizeX - 1 || x < 0 ) {
+			while ( x < 0 ) x += sizeX;
+			return x % sizeX;
+		}
+		return x;
+	}
+	/**
+	 * ynorm
+	 * return torus-normalized values for raw y value.
+	 * @param y
+	 * @return int
+	 */
+	public int ynorm ( int y ) {
+		if ( y > sizeY - 1 || y < 0 ) {
+			while ( y < 0 ) y += sizeY;
+			return y % sizeY;
+		}
+		return y;
+	}
+
+	/**
+	 * getValueAt
+	 * @param x
+	 * @param y
+	 * @return value in the read copy at x,y (torus normalized)
+	 */
+	public double getValueAt ( int x, int y ) {
+		return readCells[ ynorm( y ) * sizeX + xnorm( x ) ];
+	}
+
+	/**
+	 * putValueAt
+	 * write v into the write copy at x,y (torus normalized).
+	 * It won't be seen by getValueAt until update() is called.
+	 * (The written values are kept in the pending list, which is all
+	 * of the write copy anyone can see outside of diffuse().)
+	 */
+	public void putValueAt ( int x, int y, double v ) {
+		int i = ynorm( y ) * sizeX + xnorm( x );
+		if ( numPending == pendingIndex.length ) {
+			pendingIndex = java.util.Arrays.copyOf( pendingIndex, 2 * numPending );
+			pendingValue = java.util.Arrays.copyOf( pendingValue, 2 * numPending );
+		}
+		pendingIndex[numPending] = i;
+		pendingValue[numPending] = v;
+		++numPending;
+	}
+
+	/**
+	 * update
+	 * make the values written with putValueAt visible in the read copy.
+	 * If we have the sums from diffuseAndReduce(), keep them up to date.
+	 */
+	public void update () {
+		if ( numPending > 0 )
+			++changes;
+		for ( int p = 0; p < numPending; ++p ) {
+			int i = pendingIndex[p];
+			double v = pendingValue[p];
+			if ( reduced ) {
+				double old = readCells[i];
+				rowSums[ i / sizeX ] += v - old;
+				total += v - old;
+				if ( v >= maxCell )
+					maxCell = v;
+				else if ( old >= maxCell )
+					maxStale = true;	// we may have lowered the max
+			}
+			readCells[i] = v;
+			if ( activeRegion && v != 0.0 )
+				readBox.include( i % sizeX, i / sizeX );
+		}
+		numPending = 0;
+	}
+
+	/**
+	 * diffuse
+	 * diffuse and evaporate from the read copy (T) into the write copy (T'),
+	 * then make T' the new read copy.  Like Diffuse2D, anything put but
+	 * not yet updated is overwritten.
+	 * If we are tracking the active region, only the cells in or next to
+	 * the read copy's box are computed, the rest are known to stay 0.
+	 */
+	public void diffuse () {
+		diffuse( false );
+	}
+
+	/**
+	 * diffuseAndReduce
+	 * diffuse() and, in the same pass over each row, get the row's sum and max,
+	 * so getTotal(), getMax() and getRowSum() don't have to sweep the field again.
+	 * update() keeps those current, so exogenous pheromone can be put and updated
+	 * afterwards at the cost of one cell.
+	 */
+	public void diffuseAndReduce () {
+		diffuse( true );
+	}
+
+	protected void diffuse ( boolean reduce ) {
+		int y0 = 0, y1 = sizeY, x0 = 0, x1 = sizeX;
+		if ( activeRegion ) {
+			Box target = targetBox;
+			target.set( readBox );
+			target.grow( 1 );
+			writeBox.clearOutside( writeCells, target );
+			y0 = target.minY;  y1 = target.maxY + 1;
+			x0 = target.minX;  x1 = target.maxX + 1;
+		}
+		reducing = reduce;
+		if ( reducing ) {		// rows we don't diffuse are all 0
+			java.util.Arrays.fill( rowSums, 0.0 );
+			java.util.Arrays.fill( rowMax, 0.0 );
+		}
+		if ( y1 > y0 ) {
+			if ( numThreads > 1 && y1 - y0 >= 2 * numThreads )
+				pool.invoke( new DiffuseBands( readCells, writeCells, y0, y1, x0, x1, numThreads ) );
+			else
+				diffuseRows( readCells, writeCells, y0, y1, x0, x1 );
+		}
+		if ( activeRegion )
+			writeBox.fitRows( y0, y1 );
+		swapCopies();
+		++numDiffusions;
+		reduced = reducing;
+		if ( reduced ) {
+			total = 0.0;
+			maxCell = 0.0;
+			for ( int y = 0; y < sizeY; ++y ) {
+				total += rowSums[y];
+				maxCell = Math.max( maxCell, rowMax[y] );
+			}
+			maxStale = false;
+		}
+	}
+
+	/**
+	 * DiffuseBands
+	 * diffuse rows [yFrom,yTo) as numBands bands of (nearly) equal height,
+	 * splitting in half until there is one band per task.
+	 */
+	protected class DiffuseBands extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		final double[] src, dst;
+		final int yFrom, yTo, xFrom, xTo, numBands;
+
+		DiffuseBands ( double[] src, double[] dst, int yFrom, int yTo,
+					   int xFrom, int xTo, int numBands ) {
+			this.src = src;
+			this.dst = dst;
+			this.yFrom = yFrom;
+			this.yTo = yTo;
+			this.xFrom = xFrom;
+			this.xTo = xTo;
+			this.numBands = numBands;
+		}
+
+		protected void compute () {
+			if ( numBands <= 1 ) {
+				diffuseRows( src, dst, yFrom, yTo, xFrom, xTo );
+				return;
+			}
+			int lowBands = numBands / 2;
+			int yMid = yFrom + (int) ( (long) ( yTo - yFrom ) * lowBands / numBands );
+			invokeAll( new DiffuseBands( src, dst, yFrom, yMid, xFrom, xTo, lowBands ),
+					   new DiffuseBands( src, dst, yMid, yTo, xFrom, xTo, numBands - lowBands ) );
+		}
+	}
+
+	/**
+	 * diffuseRows
+	 * apply the diffusion rule to columns [xFrom,xTo) of rows [yFrom,yTo) of src,
+	 * writing into dst.  Cells outside the range are read (wrapping around the
+	 * torus) but not written.
+	 */
+	protected void diffuseRows ( double[] src, double[] dst, int yFrom, int yTo,
+								 int xFrom, int xTo ) {
+		boolean finish = activeRegion || reducing;
+		for ( int y = yFrom; y < yTo; ++y ) {
+			if ( kernel != scalarKernel && sizeX >= 3 )
+				diffuseRowsStraight( src, dst, y, y + 1, xFrom, xTo );
+			else
+				diffuseRowsScalar( src, dst, y, y + 1, xFrom, xTo );
+			if ( finish )
+				finishRow( dst, y, xFrom, xTo );
+		}
+	}
+
+	/**
+	 * finishRow
+	 * while row y of dst is still in cache, after it was diffused:
+	 * - if tracking the active region, flush values below flushEpsilon to 0
+	 *   and note the first and last non-zero column;
+	 * - if reducing, store the row's sum and max.
+	 */
+	protected void finishRow ( double[] dst, int y, int xFrom, int xTo ) {
+		int row = y * sizeX;
+		if ( activeRegion ) {
+			double eps = flushEpsilon;
+			int first = xTo, last = xFrom - 1;
+			for ( int x = xFrom; x < xTo; ++x ) {
+				if ( dst[row + x] < eps )
+					dst[row + x] = 0.0;
+				if ( dst[row + x] != 0.0 ) {
+					if ( first == xTo )
+						first = x;
+					last = x;
+				}
+			}
+			rowFirst[y] = first;
+			rowLast[y] = last;
+		}
+		if ( reducing ) {
+			double sum = 0.0, max = 0.0;
+			for ( int x = xFrom; x < xTo; ++x ) {
+				double v = dst[row + x];
+				sum += v;
+				if ( v > max )
+					max = v;
+			}
+			rowSums[y] = sum;
+			rowMax[y] = max;
+		}
+	}
+
+	/**
+	 * diffuseRowsScalar
+	 * the scalarKernel version of diffuseRows.
+	 */
+	protected void diffuseRowsScalar ( double[] src, double[] dst, int yFrom, int yTo,
+									   int xFrom, int xTo ) {
+		double k = diffusionK, e = evapRate;
+		for ( int y = yFrom; y < yTo; ++y ) {
+			int row = y * sizeX;
+			int up = ( y == 0 ? sizeY - 1 : y - 1 ) * sizeX;
+			int down = ( y == sizeY - 1 ? 0 : y + 1 ) * sizeX;
+			for ( int x = xFrom; x < xTo; ++x ) {
+				int left = ( x == 0 ? sizeX - 1 : x - 1 );
+				int right = ( x == sizeX - 1 ? 0 : x + 1 );
+				double orth = src[up + x] + src[down + x] + src[row + left] + src[row + right];
+				double diag = src[up + left] + src[up + right]
+							+ src[down + left] + src[down + right];
+				double v = src[row + x];
+				double nghAvg = ( 4.0 * orth + diag ) / 20.0;
+				dst[row + x] = e * ( v + k * ( nghAvg - v ) );
+			}
+		}
+	}
+
+	/**
+	 * diffuseRowsStraight
+	 * the rowKernel version of diffuseRows: interior columns in a loop with
+	 * no wraparound (or by interior, for the vectorKernel), then columns 0
+	 * and sizeX-1 (if in range) with the scalar code.
+	 * NB: needs sizeX >= 3.
+	 */
+	protected void diffuseRowsStraight ( double[] src, double[] dst, int yFrom, int yTo,
+										 int xFrom, int xTo ) {
+		double k = diffusionK, e = evapRate;
+		int xStart = Math.max( xFrom, 1 );
+		int xEnd = Math.min( xTo, sizeX - 1 );
+		for ( int y = yFrom; y < yTo; ++y ) {
+			int row = y * sizeX;
+			int up = ( y == 0 ? sizeY - 1 : y - 1 ) * sizeX;
+			int down = ( y == sizeY - 1 ? 0 : y + 1 ) * sizeX;
+			if ( interior != null )
+				interior.diffuseInterior( src, dst, row, up, down, xStart, xEnd, k, e );
+			else for ( int x = xStart; x < xEnd; ++x ) {
+				double orth = src[up + x] + src[down + x] + src[row + x - 1] + src[row + x + 1];
+				double diag = src[up + x - 1] + src[up + x + 1]
+							+ src[down + x - 1] + src[down + x + 1];
+				double v = src[row + x];
+				double nghAvg = ( 4.0 * orth + diag ) / 20.0;
+				dst[row + x] = e * ( v + k * ( nghAvg - v ) );
+			}
+			// the scalar tail: the two columns that wrap around
+			if ( xFrom == 0 )
+				diffuseCell( src, dst, row, up, down, 0, sizeX - 1, 1 );
+			if ( xTo == sizeX )
+				diffuseCell( src, dst, row, up, down, sizeX - 1, sizeX - 2, 0 );
+		}
+	}
+
+	/**
+	 * diffuseCell
+	 * apply the diffusion rule to one cell x, given the offsets of its
+	 * row and the rows above and below it, and its left and right columns.
+	 */
+	protected final void diffuseCell ( double[] src, double[] dst, int row, int up, int down,
+									   int x, int left, int right ) {
+		double orth = src[up + x] + src[down + x] + src[row + left] + src[row + right];
+		double diag = src[up + left] + src[up + right]
+					+ src[down + left] + src[down + right];
+		double v = src[row + x];
+		double nghAvg = ( 4.0 * orth + diag ) / 20.0;
+		dst[row + x] = evapRate * ( v + diffusionK * ( nghAvg - v ) );
+	}
+
+	/**
+	 * swapCopies
+	 * the write copy just computed becomes the read copy,
+	 * and any pending puts are dropped.
+	 */
+	protected void swapCopies () {
+		double[] t = readCells;
+		readCells = writeCells;
+		writeCells = t;
+		Box b = readBox;
+		readBox = writeBox;
+		writeBox = b;
+		numPending = 0;
+		++changes;
+	}
+
+	////////////////////////////////////////////////////////////////////////////
+	// several steps at a time (temporal blocking)
+	//
+
+	public static final int tileSize = 128;		// output cells per tile side
+	public static final int blockSteps = 8;		// steps done per pass over a tile
+
+	// per-thread scratch tiles for diffuseSteps
+	protected ThreadLocal<double[][]> tileBuffers = new ThreadLocal<double[][]>() {
+		protected double[][] initialValue () {
+			int w = tileSize + 2 * blockSteps;
+			return new double[][] { new double[w * w], new double[w * w] };
+		}
+	};
+
+	/**
+	 * diffuseSteps
+	 * same as calling diffuse() n times.
+	 */
+	public void diffuseSteps ( int n ) {
+		diffuseSteps( n, -1, -1, 0.0, 0.0 );
+	}
+
+	/**
+	 * diffuseSteps
+	 * same as doing this n times (which is what the model does to warm up):
+	 *      v = amount + getValueAt( srcX, srcY );
+	 *      putValueAt( srcX, srcY, Math.min( v, maxV ) );
+	 *      update();
+	 *      diffuse();
+	 * but done in tiles: each tile is copied, with a halo of blockSteps
+	 * cells around it, into a scratch buffer that fits in the L2 cache, and
+	 * up to blockSteps steps are done there before the tile goes back to
+	 * memory.  Each step the valid part of the scratch buffer shrinks by
+	 * one cell on each side, and after the last step it is just the tile.
+	 * Every cell value is computed by the same expression from the same
+	 * inputs as in diffuse(), so the results are bit-identical.
+	 * (A srcX < 0 means no injection.)
+	 */
+	public void diffuseSteps ( int n, int srcX, int srcY, double amount, double maxV ) {
+		numPending = 0;
+		while ( n > 0 ) {
+			int k = Math.min( n, blockSteps );
+			if ( numThreads > 1 )
+				pool.invoke( new DiffuseTiles( 0, numTiles(), k, srcX, srcY, amount, maxV ) );
+			else
+				diffuseTiles( 0, numTiles(), k, srcX, srcY, amount, maxV );
+			swapCopies();
+			numDiffusions += k;
+			n -= k;
+		}
+		reduced = false;
+		if ( activeRegion )
+			setActiveRegion( true );	// refit the box to what we have now
+	}
+
+	protected int numTiles () {
+		return ( ( sizeX + tileSize - 1 ) / tileSize ) * ( ( sizeY + tileSize - 1 ) / tileSize );
+	}
+
+	/**
+	 * DiffuseTiles
+	 * run diffuseTiles on tiles [tFrom,tTo), splitting the range in half
+	 * until it is small enough.
+	 */
+	protected class DiffuseTiles extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		final int tFrom, tTo, k, srcX, srcY;
+		final double amount, maxV;
+
+		DiffuseTiles ( int tFrom, int tTo, int k, int srcX, int srcY, double amount, double maxV ) {
+			this.tFrom = tFrom;
+			this.tTo = tTo;
+			this.k = k;
+			this.srcX = srcX;
+			this.srcY = srcY;
+			this.amount = amount;
+			this.maxV = maxV;
+		}
+
+		protected void compute () {
+			if ( tTo - tFrom <= 2 ) {
+				diffuseTiles( tFrom, tTo, k, srcX, srcY, amount, maxV );
+				return;
+			}
+			int tMid = ( tFrom + tTo ) / 2;
+			invokeAll( new DiffuseTiles( tFrom, tMid, k, srcX, srcY, amount, maxV ),
+					   new DiffuseTiles( tMid, tTo, k, srcX, srcY, amount, maxV ) );
+		}
+	}
+
+	/**
+	 * diffuseTiles
+	 * do k (<= blockSteps) inject+diffuse steps for tiles [tFrom,tTo)
+	 * (numbered across then down), from readCells into writeCells.
+	 */
+	protected void diffuseTiles ( int tFrom, int tTo, int k, int srcX, int srcY,
+								  double amount, double maxV ) {
+		double[][] bufs = tileBuffers.get();
+		int tilesAcross = ( sizeX + tileSize - 1 ) / tileSize;
+		double ke = diffusionK, e = evapRate;
+		boolean flush = activeRegion && flushEpsilon > 0.0;
+
+		for ( int t = tFrom; t < tTo; ++t ) {
+			int tx0 = ( t % tilesAcross ) * tileSize;
+			int ty0 = ( t / tilesAcross ) * tileSize;
+			int tw = Math.min( tileSize, sizeX - tx0 );
+			int th = Math.min( tileSize, sizeY - ty0 );
+			int w = tw + 2 * k, h = th + 2 * k;	// scratch size: tile plus halo
+			double[] src = bufs[0], dst = bufs[1];
+
+			// copy tile and halo in, wrapping around the torus
+			int gx0 = xnorm( tx0 - k );
+			for ( int ly = 0; ly < h; ++ly ) {
+				int row = ynorm( ty0 - k + ly ) * sizeX;
+				int gx = gx0, lx = 0;
+				while ( lx < w ) {		// copy runs of columns up to the right edge
+					int run = Math.min( w - lx, sizeX - gx );
+					System.arraycopy( readCells, row + gx, src, ly * w + lx, run );
+					lx += run;
+					gx = 0;
+				}
+			}
+
+			// step j: cells [j-1, size-j+1) are valid in src, compute [j, size-j) in dst
+			for ( int j = 1; j <= k; ++j ) {
+				if ( srcX >= 0 )
+					injectInTile( src, w, tx0 - k, ty0 - k, j - 1, w - j + 1, j - 1, h - j + 1,
+								  srcX, srcY, amount, maxV );
+				for ( int ly = j; ly < h - j; ++ly ) {
+					int row = ly * w, up = row - w, down = row + w;
+					for ( int lx = j; lx < w - j; ++lx ) {
+						double orth = src[up + lx] + src[down + lx] + src[row + lx - 1] + src[row + lx + 1];
+						double diag = src[up + lx - 1] + src[up + lx + 1]
+									+ src[down + lx - 1] + src[down + lx + 1];
+						double v = src[row + lx];
+						double nghAvg = ( 4.0 * orth + diag ) / 20.0;
+						dst[row + lx] = e * ( v + ke * ( nghAvg - v ) );
+					}
+					if ( flush ) {
+						for ( int lx = j; lx < w - j; ++lx ) {
+							if ( dst[row + lx] < flushEpsilon )
+								dst[row + lx] = 0.0;
+						}
+					}
+				}
+				double[] tmp = src;  src = dst;  dst = tmp;
+			}
+
+			// copy the tile (now valid in src) out
+			for ( int ly = 0; ly < th; ++ly )
+				System.arraycopy( src, ( ly + k ) * w + k, writeCells, ( ty0 + ly ) * sizeX + tx0, tw );
+		}
+	}
+
+	/**
+	 * injectInTile
+	 * do the exogenous injection to every copy of cell srcX,srcY inside
+	 * [lxFrom,lxTo) x [lyFrom,lyTo) of a scratch tile whose 0,0 is at x0,y0.
+	 */
+	protected void injectInTile ( double[] buf, int w, int x0, int y0,
+								  int lxFrom, int lxTo, int lyFrom, int lyTo,
+								  int srcX, int srcY, double amount, double maxV ) {
+		for ( int ly = lyFrom; ly < lyTo; ++ly ) {
+			if ( ynorm( y0 + ly ) != srcY )
+				continue;
+			for ( int lx = lxFrom; lx < lxTo; ++lx ) {
+				if ( xnorm( x0 + lx ) == srcX ) {
+					double v = amount + buf[ly * w + lx];
+					buf[ly * w + lx] = Math.min( v, maxV );
+				}
+			}
+		}
+	}
+
+	////////////////////////////////////////////////////////////////////////////
+	// active region tracking
+	//
+
+	/**
+	 * setActiveRegion
+	 * turn tracking of the box holding the non-zero cells on or off.
+	 * When turned on, the box is found by scanning the read copy.
+	 */
+	public void setActiveRegion ( boolean b ) {
+		activeRegion = b;
+		readBox = new Box();
+		writeBox = new Box();
+		if ( activeRegion ) {
+			readBox.fit( readCells, 0, sizeY, 0, sizeX );
+			writeBox.setAll();		// we don't know what's in the scratch copy
+		}
+	}
+	public boolean getActiveRegion () { return activeRegion; }
+	public double getFlushEpsilon () { return flushEpsilon; }
+	public void setFlushEpsilon ( double d ) { flushEpsilon = d; }
+	/**
+	 * getActiveCells
+	 * @return number of cells in the active box (all cells if not tracking).
+	 */
+	public int getActiveCells () {
+		if ( !activeRegion )
+			return sizeX * sizeY;
+		return readBox.numCells();
+	}
+
+	/**
+	 * Box
+	 * an inclusive, non-wrapping range of rows and columns of the field.
+	 * Every cell outside the box is 0; the box is empty if minX > maxX.
+	 * Growing past an edge of the torus makes that range cover all of it.
+	 */
+	protected class Box {
+		int minX, maxX, minY, maxY;
+
+		Box () { setEmpty(); }
+
+		void set ( Box b ) {
+			minX = b.minX;  maxX = b.maxX;
+			minY = b.minY;  maxY = b.maxY;
+		}
+
+		void setEmpty () {
+			minX = sizeX;  maxX = -1;
+			minY = sizeY;  maxY = -1;
+		}
+		void setAll () {
+			minX = 0;  maxX = sizeX - 1;
+			minY = 0;  maxY = sizeY - 1;
+		}
+		boolean isEmpty () { return minX > maxX || minY > maxY; }
+		int numCells () {
+			return isEmpty() ? 0 : ( maxX - minX + 1 ) * ( maxY - minY + 1 );
+		}
+
+		void include ( int x, int y ) {
+			minX = Math.min( minX, x );  maxX = Math.max( maxX, x );
+			minY = Math.min( minY, y );  maxY = Math.max( maxY, y );
+		}
+		void include ( Box b ) {
+			if ( b.isEmpty() )
+				return;
+			include( b.minX, b.minY );
+			include( b.maxX, b.maxY );
+		}
+
+		void grow ( int d ) {
+			if ( isEmpty() )
+				return;
+			minX -= d;  maxX += d;
+			minY -= d;  maxY += d;
+			if ( minX < 0 || maxX > sizeX - 1 ) {
+				minX = 0;  maxX = sizeX - 1;
+			}
+			if ( minY < 0 || maxY > sizeY - 1 ) {
+				minY = 0;  maxY = sizeY - 1;
+			}
+		}
+
+		/**
+		 * clearOutside
+		 * set to 0 every cell of cells that is in this box but not in keep.
+		 */
+		void clearOutside ( double[] cells, Box keep ) {
+			for ( int y = minY; y <= maxY; ++y ) {
+				int row = y * sizeX;
+				if ( keep.isEmpty() || y < keep.minY || y > keep.maxY ) {
+					java.util.Arrays.fill( cells, row + minX, row + maxX + 1, 0.0 );
+				}
+				else {
+					if ( minX < keep.minX )
+						java.util.Arrays.fill( cells, row + minX,
+											   row + Math.min( maxX + 1, keep.minX ), 0.0 );
+					if ( maxX > keep.maxX )
+						java.util.Arrays.fill( cells, row + Math.max( minX, keep.maxX + 1 ),
+											   row + maxX + 1, 0.0 );
+				}
+			}
+		}
+
+		/**
+		 * fitRows
+		 * make this the box of the non-zero cells, from the first/last
+		 * non-zero columns finishRow noted for rows [yFrom,yTo).
+		 * NB: assumes all the cells outside those rows are 0.
+		 */
+		void fitRows ( int yFrom, int yTo ) {
+			setEmpty();
+			for ( int y = yFrom; y < yTo; ++y ) {
+				if ( rowFirst[y] > rowLast[y] )
+					continue;		// all 0 in this row
+				minY = Math.min( minY, y );  maxY = y;
+				minX = Math.min( minX, rowFirst[y] );  maxX = Math.max( maxX, rowLast[y] );
+			}
+		}
+
+		/**
+		 * fit
+		 * make this the box of the non-zero cells in rows [yFrom,yTo), columns [xFrom,xTo).
+		 */
+		void fit ( double[] cells, int yFrom, int yTo, int xFrom, int xTo ) {
+			setEmpty();
+			for ( int y = yFrom; y < yTo; ++y ) {
+				int row = y * sizeX;
+				int first = xFrom;
+				while ( first < xTo && cells[row + first] == 0.0 )
+					++first;
+				if ( first == xTo )
+					continue;		// all 0 in this row
+				int last = xTo - 1;
+				while ( cells[row + last] == 0.0 )
+					--last;
+				minY = Math.min( minY, y );  maxY = y;
+				minX = Math.min( minX, first );  maxX = Math.max( maxX, last );
+			}
+		}
+	}
+
+	////////////////////////////////////////////////////////////////////////////
+	// padded copy with a ghost border
+	//
+
+	/**
+	 * setGhostWidth
+	 * keep a padded copy of the field with a ghost border g cells wide
+	 * (0 for none).  g can be at most half the size of the field.
+	 */
+	public void setGhostWidth ( int g ) {
+		if ( g < 0 || 2 * g > sizeX || 2 * g > sizeY ) {
+			System.err.printf( "\nPheromoneField: ghost width %d too big for %dx%d field!\n",
+							   g, sizeX, sizeY );
+			g = 0;
+		}
+		ghostWidth = g;
+		ghostArray = null;
+		ghostCells = null;
+		if ( g == 0 )
+			return;
+		ghostStride = sizeX + 2 * g;
+		ghostArray = newGhostArray( ghostStride * ( sizeY + 2 * g ) );
+		if ( ghostArray instanceof double[] )
+			ghostCells = (double[]) ghostArray;
+		ghostChanges = -1;
+		ghostBox.setAll();			// copy it all the first time
+		refreshGhosts();
+	}
+	public int getGhostWidth () { return ghostWidth; }
+	public int getGhostStride () { return ghostStride; }
+	/**
+	 * getGhostCells
+	 * @return the padded copy: the cell at x,y (x,y in -g..size+g-1) is
+	 * at ghostIndex(x,y).  Only valid as of the last refreshGhosts().
+	 * null if there is none, or it isn't doubles (see getGhostFixed).
+	 */
+	public final double[] getGhostCells () { return ghostCells; }
+	/**
+	 * getGhostFixed
+	 * @return the padded copy of a fixed point field (see
+	 * FixedPointPheromoneField), else null.
+	 */
+	public char[] getGhostFixed () { return null; }
+	public final int ghostIndex ( int x, int y ) {
+		return ( y + ghostWidth ) * ghostStride + x + ghostWidth;
+	}
+
+	/**
+	 * readArray
+	 * @return the array holding the read copy, in row order
+	 */
+	protected Object readArray () { return readCells; }
+
+	/**
+	 * newGhostArray
+	 * @return a new array of n cells of the same type as readArray()
+	 */
+	protected Object newGhostArray ( int n ) { return new double[n]; }
+
+	/**
+	 * refreshGhosts
+	 * copy the read copy into the padded copy, including the ghost border.
+	 * Call after the field changes (diffuse(), update()) and before the
+	 * padded copy is read.  Does nothing if the field hasn't changed since
+	 * the last call; with the active region, only copies the cells in the
+	 * box now or as of the last call, as all the others are 0 in both.
+	 */
+	public void refreshGhosts () {
+		int g = ghostWidth;
+		if ( g == 0 || ghostChanges == changes )
+			return;
+		ghostChanges = changes;
+		Box b = refreshBox;
+		if ( activeRegion ) {
+			b.set( readBox );
+			b.include( ghostBox );
+			ghostBox.set( readBox );
+		}
+		else {
+			b.setAll();
+			ghostBox.setAll();
+		}
+		if ( b.isEmpty() )
+			return;
+
+		// the box's part of the field's rows, and the ghost columns at each
+		// end if the box reaches the cells they are copies of
+		Object cells = readArray(), ghosts = ghostArray;
+		int width = b.maxX - b.minX + 1;
+		for ( int y = b.minY; y <= b.maxY; ++y ) {
+			int row = y * sizeX, ghostRow = ( y + g ) * ghostStride + g;
+			System.arraycopy( cells, row + b.minX, ghosts, ghostRow + b.minX, width );
+			if ( b.maxX >= sizeX - g )
+				System.arraycopy( cells, row + sizeX - g, ghosts, ghostRow - g, g );
+			if ( b.minX < g )
+				System.arraycopy( cells, row, ghosts, ghostRow + sizeX, g );
+		}
+		// ghost rows above and below are copies of whole padded rows
+		for ( int i = 0; i < g; ++i ) {
+			if ( b.minY <= sizeY - g + i && sizeY - g + i <= b.maxY )
+				System.arraycopy( ghosts, ( sizeY + i ) * ghostStride,
+								  ghosts, i * ghostStride, ghostStride );
+			if ( b.minY <= i && i <= b.maxY )
+				System.arraycopy( ghosts, ( g + i ) * ghostStride,
+								  ghosts, ( sizeY + g + i ) * ghostStride, ghostStride );
+		}
+	}
+
+	////////////////////////////////////////////////////////////////////////////
+	// bulk accessors -- these avoid a getValueAt call per cell.
+	//
+
+	/**
+	 * getRow
+	 * copy row y of the read copy into dst (which must hold sizeX values).
+	 * @return dst
+	 */
+	public double[] getRow ( int y, double[] dst ) {
+		System.arraycopy( readCells, ynorm( y ) * sizeX, dst, 0, sizeX );
+		return dst;
+	}
+
+	/**
+	 * getRowSum
+	 * @return sum of the values in row y of the read copy
+	 * (only the part of the row in the active box, if we track it.)
+	 */
+	public double getRowSum ( int y ) {
+		y = ynorm( y );
+		if ( reduced )
+			return rowSums[y];
+		int x0 = 0, x1 = sizeX;
+		if ( activeRegion ) {
+			if ( readBox.isEmpty() || y < readBox.minY || y > readBox.maxY )
+				return 0.0;
+			x0 = readBox.minX;
+			x1 = readBox.maxX + 1;
+		}
+		double sum = 0.0;
+		int row = y * sizeX;
+		for ( int x = x0; x < x1; ++x )
+			sum += readCells[row + x];
+		return sum;
+	}
+
+	/**
+	 * getTotal
+	 * @return sum of all values in the read copy
+	 */
+	public double getTotal () {
+		if ( reduced )
+			return total;
+		int y0 = 0, y1 = sizeY;
+		if ( activeRegion ) {
+			y0 = readBox.minY;
+			y1 = readBox.maxY + 1;
+		}
+		double sum = 0.0;
+		for ( int y = y0; y < y1; ++y )
+			sum += getRowSum( y );
+		return sum;
+	}
+
+	/**
+	 * getMax
+	 * @return the largest value in the read copy
+	 */
+	public double getMax () {
+		if ( reduced && !maxStale )
+			return maxCell;
+		double max = 0.0;
+		for ( int y = 0; y < sizeY; ++y ) {
+			int row = y * sizeX;
+			for ( int x = 0; x < sizeX; ++x )
+				max = Math.max( max, readCells[row + x] );
+		}
+		return max;
+	}
+
+	/**
+	 * copyToSpace
+	 * copy the read copy into a Repast space (eg for display),
+	 * which must be at least sizeX by sizeY.
+	 */
+	public void copyToSpace ( uchicago.src.sim.space.Discrete2DSpace space ) {
+		for ( int y = 0; y < sizeY; ++y ) {
+			for ( int x = 0; x < sizeX; ++x )
+				space.putValueAt( x, y, getValueAt( x, y ) );
+		}
+	}
+
+	/**
+	 * maxAbsDifference
+	 * @return the largest |a-b| between this field and another one.
+	 */
+	public double maxAbsDifference ( PheromoneField other ) {
+		double maxD = 0.0;
+		for ( int y = 0; y < sizeY; ++y ) {
+			for ( int x = 0; x < sizeX; ++x )
+				maxD = Math.max( maxD, Math.abs( getValueAt( x, y ) - other.getValueAt( x, y ) ) );
+		}
+		return maxD;
+	}
+
+	/**
+	 * maxRelativeDifference
+	 * @return the largest |a-b|/max(|a|,|b|) between this field
+	 *         and the values in a Repast space (eg a Diffuse2D).
+	 */
+	public double maxRelativeDifference ( uchicago.src.sim.space.Discrete2DSpace space ) {
+		double maxD = 0.0;
+		for ( int y = 0; y < sizeY; ++y ) {
+			for ( int x = 0; x < sizeX; ++x ) {
+				double a = getValueAt( x, y );
+				double b = space.getValueAt( x, y );
+				double scale = Math.max( Math.abs( a ), Math.abs( b ) );
+				if ( scale > 0.0 )
+					maxD = Math.max( maxD, Math.abs( a - b ) / scale );
+			}
+		}
+		return maxD;
+	}
+
+	////////////////////////////////////////////////////////////////////////////
+	// saving to and loading from a binary file
+	//
+
+	public static final int fileMagic = 0x50484552;	// "PHER"
+	public static final int fileVersion = 1;
+
+	/**
+	 * saveTo
+	 * write the read copy to file, with a header holding key (which
+	 * loadFrom must be given to accept the file).  Writes to a temporary
+	 * file first and renames it, so a reader never sees half a file.
+	 */
+	public void saveTo ( File file, String key ) throws IOException {
+		byte[] keyBytes = key.getBytes( "UTF-8" );
+		int headerSize = 4 + 4 + 4 + keyBytes.length + 4 + 4 + 8;
+		ByteBuffer buf = ByteBuffer.allocate( headerSize + 8 * sizeX * sizeY );
+		buf.putInt( fileMagic ).putInt( fileVersion );
+		buf.putInt( keyBytes.length ).put( keyBytes );
+		buf.putInt( sizeX ).putInt( sizeY ).putLong( numDiffusions );
+		for ( int y = 0; y < sizeY; ++y ) {
+			for ( int x = 0; x < sizeX; ++x )
+				buf.putDouble( getValueAt( x, y ) );
+		}
+		buf.flip();
+
+		File tmp = new File( file.getPath() + ".tmp" + System.nanoTime() );
+		RandomAccessFile raf = new RandomAccessFile( tmp, "rw" );
+		try {
+			FileChannel ch = raf.getChannel();
+			while ( buf.hasRemaining() )
+				ch.write( buf );
+		}
+		finally {
+			raf.close();
+		}
+		if ( !tmp.renameTo( file ) ) {
+			tmp.delete();
+			throw new IOException( "couldn't rename " + tmp + " to " + file );
+		}
+	}
+
+	/**
+	 * loadFrom
+	 * replace the read copy by the values in a file written by saveTo.
+	 * @return false (and leave the field alone) if the file's header
+	 *         doesn't match key and this field's size.
+	 */
+	public boolean loadFrom ( File file, String key ) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile( file, "r" );
+		try {
+			FileChannel ch = raf.getChannel();
+			MappedByteBuffer buf = ch.map( FileChannel.MapMode.READ_ONLY, 0, ch.size() );
+			if ( buf.remaining() < 12 || buf.getInt() != fileMagic || buf.getInt() != fileVersion )
+				return false;
+			int keyLength = buf.getInt();
+			if ( keyLength < 0 || keyLength > buf.remaining() )
+				return false;
+			byte[] keyBytes = new byte[keyLength];
+			buf.get( keyBytes );
+			if ( !key.equals( new String( keyBytes, "UTF-8" ) ) )
+				return false;
+			if ( buf.remaining() < 16 || buf.getInt() != sizeX || buf.getInt() != sizeY )
+				return false;
+			long diffusions = buf.getLong();
+			if ( buf.remaining() < 8L * sizeX * sizeY )
+				return false;
+			readValues( buf.asDoubleBuffer() );
+			++changes;
+			numDiffusions = diffusions;
+			reduced = false;
+			if ( activeRegion )
+				setActiveRegion( true );	// refit the box to what we loaded
+			return true;
+		}
+		finally {
+			raf.close();
+		}
+	}
+
+	/**
+	 * readValues
+	 * set the read copy from sizeX*sizeY values in row order,
+	 * dropping anything pending.
+	 */
+	protected void readValues ( DoubleBuffer values ) {
+		values.get( readCells );
+		numPending = 0;
+	}
+
+}
@@ -0,0 +1,55 @@
+package AntPheromones;
+
+/**
+RandomSource
+
+Where the model, the world and the ants get their random numbers.
+
+* ColtRandomSource -- the Repast/Colt generators shared by the whole
+  model (ModelParameters.getUniformIntFromTo etc), as it has always
+  been done; draws depend on the order everything is done in.
+* CounterRandomSource -- a counter-based generator: each draw is a
+  function of the seed, and a (key, stream id, draw number) counter,
+  so any ant's draws for a step can be made on any thread, in any
+  order, and come out the same.
+* SplitMix64 -- a small, fast stream, seeded from a key and stream id.
+* XoshiroRandomSource -- a fast generator that makes its numbers in bulk,
+  for one thread.
+
+setStream( key, streamId ) starts the stream for one user (eg key = step
+number, streamId = ant id) from its first draw; the Colt source has only
+the one shared stream, so for it setStream does nothing.
+
+*/
+
+public interface RandomSource {
+
+	/**
+	 * setStream
+	 * start the draws for key, streamId (ignored by shared generators).
+	 */
+	public void setStream ( long key, long streamId );
+
+	/** @return uniform double in [0,1) */
+	public double nextDouble ();
+
+	/** @return uniform double in [low,high) */
+	public double nextDoubleFromTo ( double low, double high );
+
+	/** @return uniform int in [low,high] */
+	public int nextIntFromTo ( int low, int high );
+
+	/** @return 64 random bits */
+	public long nextLong ();
+
+	/** @return double drawn from normal (mean, sd) */
+	public double nextNormal ( double mean, double sd );
+
+	/**
+	 * nextNeighborIndex
+	 * @return one of the 8 neighbors of a cell, as k = (dy+1)*3 + (dx+1)
+	 * (the order of TorusWorld.getOpenNeighborMask), so never 4
+	 */
+	public int nextNeighborIndex ();
+
+}
@@ -0,0 +1,90 @@
+package AntPheromones;
+
+/**
+SourceDistanceTable
+
+Per cell lookup tables for the pheromone source, which doesn't move
+once the model is built:
+* distance -- the (non-torus) distance from the cell to the source,
+       sqrt( (x-srcX)^2 + (y-srcY)^2 )
+* deathScale -- the factor an ant's probDieCenter is multiplied by to
+  get its probability of dying in that cell,
+       1 - distance / maxDistanceToCenter
+so an ant's death check is a table read and a multiply instead of a sqrt.
+
+The tables are computed with exactly the arithmetic Model and Ant used
+to do on the fly, so with doublePrecision the values (and so the runs)
+are bit for bit the same.  With floatPrecision they are stored as
+floats, which halves the memory (8 bytes per cell instead of 16) at the
+cost of rounding each value to about 7 digits.
+
+*/
+
+public class SourceDistanceTable {
+
+	public static final int doublePrecision = 1;
+	public static final int floatPrecision = 2;
+
+	public int			sizeX, sizeY;
+	public int			srcX, srcY;
+	public double		maxDistance;		// what deathScale is relative to
+	public int			precision;
+
+	protected double[]	distance, deathScale;		// with doublePrecision
+	protected float[]	distanceF, deathScaleF;		// with floatPrecision
+
+	public SourceDistanceTable ( int sizeX, int sizeY, int srcX, int srcY,
+								 double maxDistance, int precision ) {
+		this.sizeX = sizeX;
+		this.sizeY = sizeY;
+		this.srcX = srcX;
+		this.srcY = srcY;
+		this.maxDistance = maxDistance;
+		this.precision = precision;
+		int n = sizeX * sizeY;
+		if ( precision == floatPrecision ) {
+			distanceF = new float[n];
+			deathScaleF = new float[n];
+		}
+		else {
+			distance = new double[n];
+			deathScale = new double[n];
+		}
+		for ( int y = 0; y < sizeY; ++y ) {
+			for ( int x = 0; x < sizeX; ++x ) {
+				double deltaX = (double) x - srcX;
+				double deltaY = (double) y - srcY;
+				double d = Math.sqrt( (deltaX*deltaX) + (deltaY*deltaY) );
+				double s = 1.0 - ( d / maxDistance );
+				int i = y * sizeX + x;
+				if ( precision == floatPrecision ) {
+					distanceF[i] = (float) d;
+					deathScaleF[i] = (float) s;
+				}
+				else {
+					distance[i] = d;
+					deathScale[i] = s;
+				}
+			}
+		}
+	}
+
+	/**
+	 * getDistance
+	 * @return distance from x,y (which must be in the world) to the source
+	 */
+	public final double getDistance ( int x, int y ) {
+		int i = y * sizeX + x;
+		return distance != null ? distance[i] : distanceF[i];
+	}
+
+	/**
+	 * getDeathScale
+	 * @return 1 - distance/maxDistance at x,y (which must be in the world)
+	 */
+	public final double getDeathScale ( int x, int y ) {
+		int i = y * sizeX + x;
+		return deathScale != null ? deathScale[i] : deathScaleF[i];
+	}
+
+}
@@ -0,0 +1,83 @@
+package AntPheromones;
+
+/**
+SplitMix64
+
+A small, fast random number stream: the state is a 64-bit counter that
+goes up by a fixed odd constant each draw, and each draw is that
+counter run through a mixing function (Steele, Lea and Flood's
+SplitMix64, the generator behind java.util.SplittableRandom).
+
+Because the state is just a counter, a stream can be started anywhere
+from a key, eg setSeed( mix( tickSeed + antId * golden ) ), so each ant
+can have its own stream for a step without any shared state, and the
+values it draws don't depend on which thread draws them or when.
+As a RandomSource, setStream( key, streamId ) does just that.
+
+*/
+
+public class SplitMix64 implements RandomSource {
+
+	public static final long golden = 0x9e3779b97f4a7c15L;  // 2^64 / phi, odd
+
+	protected long		state;
+
+	public SplitMix64 ( long seed ) { state = seed; }
+
+	public void setSeed ( long seed ) { state = seed; }
+
+	public void setStream ( long key, long streamId ) {
+		state = mix( key + streamId * golden );
+	}
+
+	/**
+	 * mix
+	 * @return z scrambled so that every bit of it affects every bit of the result
+	 */
+	public static long mix ( long z ) {
+		z = ( z ^ ( z >>> 30 ) ) * 0xbf58476d1ce4e5b9L;
+		z = ( z ^ ( z >>> 27 ) ) * 0x94d049bb133111ebL;
+		return z ^ ( z >>> 31 );
+	}
+
+	public final long nextLong () { return mix( state += golden ); }
+
+	/**
+	 * nextDouble
+	 * @return uniform in [0,1), from the top 53 bits of nextLong()
+	 */
+	public final double nextDouble () {
+		return ( nextLong() >>> 11 ) * 0x1.0p-53;
+	}
+
+	public double nextDoubleFromTo ( double low, double high ) {
+		return low + ( high - low ) * nextDouble();
+	}
+
+	/**
+	 * nextIntFromTo
+	 * @return uniform int in low..high (inclusive), by scaling the top 32
+	 * bits of nextLong() (biased by at most range/2^32)
+	 */
+	public final int nextIntFromTo ( int low, int high ) {
+		long range = (long) high - low + 1;
+		return (int) ( low + ( ( ( nextLong() >>> 32 ) * range ) >>> 32 ) );
+	}
+
+	/**
+	 * nextNormal
+	 * @return normal (mean, sd), by Box-Muller (one of the pair, so the
+	 * draws after it don't depend on whether the other was used)
+	 */
+	public double nextNormal ( double mean, double sd ) {
+		double u1 = 1.0 - nextDouble();		// in (0,1], so the log is finite
+		double u2 = nextDouble();
+		return mean + sd * Math.sqrt( -2.0 * Math.log( u1 ) ) * Math.cos( 2.0 * Math.PI * u2 );
+	}
+
+	public int nextNeighborIndex () {
+		int k = nextIntFromTo( 0, 7 );
+		return k < 4 ? k : k + 1;		// skip 4, the cell itself
+	}
+
+}
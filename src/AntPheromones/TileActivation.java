@@ -0,0 +1,288 @@
+package AntPheromones;
+
+/**
+TileActivation
+
+Steps the ants on several threads while each one still moves with
+Ant.step against the live occupancy, as in the sequential orders.
+
+The torus is cut into tiles at least tileSize cells on a side, an even
+number of them across and down (or just one), and the tiles are colored
+like a checkerboard with 4 colors, by the parity of their column and
+row.  An ant reads and moves at most senseRadius cells from where it
+is, so with tileSize >= 2 * senseRadius the cells the ants of one tile
+can touch never overlap those of another tile of the same color.  So
+the colors are done one after another, and within a color the tiles
+are done at once on a ForkJoin pool, each stepping its own ants one
+at a time, in the order of its list.
+
+Each tile keeps a list of the ants in it.  The ants a tile steps are
+the ones in it at the start of the step (an ant that moves into a tile
+that comes later isn't stepped again), and the lists are brought up to
+date at the end of the step, one tile after another, along with the
+world's free-cell indexes and the population (for the ants that died).
+
+Each ant draws from its own stream, keyed by the step and its id, as
+in ParallelActivation, and nothing a tile does depends
+on what the other tiles of its color do, so the results depend only on
+the seed and tileSize, not on the number of threads.
+
+NB: Unlike the sequential orders, the ants are stepped color by
+color, and tile by tile, not in the order of the model's antList.
+
+*/
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+public class TileActivation {
+
+	protected Model			model;
+	protected TorusWorld	world;
+	protected int			tileSize;		// minimum tile side
+	protected int			numThreads = 1;
+	protected ForkJoinPool	pool;			// created when numThreads > 1
+
+	protected int			tilesX, tilesY, numTiles;
+	protected int[]			tileOfX, tileOfY;	// tile column of each x, row of each y
+	protected int[][]		tilesOfColor = new int[4][];	// the tiles of each color
+
+	protected Ant[][]		tileAnts;		// the ants in each tile
+	protected int[]			tileCount;		// how many
+	protected int[][]		fromCell;		// where each was at the start of the step
+	protected int			numKnown = -1;	// ants on antList that are in the tiles, or -1
+	protected int			tileMinSize = -1;	// minimum side the tiles were set up for
+	protected Ant[]			moved = new Ant[16];	// scratch, ants that changed tiles
+	protected long			stepKey;
+
+	// each thread's stream and buffers for stepping ants
+	protected ThreadLocal<Ant.Scratch> scratches = new ThreadLocal<Ant.Scratch>() {
+		protected Ant.Scratch initialValue () { return new Ant.Scratch( model.newAntStream() ); }
+	};
+
+	public TileActivation ( Model model, int tileSize, int numThreads ) {
+		this.model = model;
+		this.tileSize = tileSize;
+		setNumThreads( numThreads );
+	}
+
+	public int getTileSize () { return tileSize; }
+	public int getNumTiles () { return numTiles; }
+	public int getNumThreads () { return numThreads; }
+	/**
+	 * setNumThreads
+	 * set how many threads step tiles; 1 (or less) means don't use the pool.
+	 */
+	public void setNumThreads ( int n ) {
+		n = Math.max( 1, n );
+		if ( n != numThreads && pool != null ) {
+			pool.shutdown();
+			pool = null;
+		}
+		numThreads = n;
+		if ( numThreads > 1 && pool == null )
+			pool = new ForkJoinPool( numThreads );
+	}
+
+	public void shutdown () {
+		if ( pool != null )
+			pool.shutdown();
+		pool = null;
+	}
+
+	/**
+	 * invalidate
+	 * the antList has been changed by something other than adding ants
+	 * at the end, so put all the ants in tiles again next step.
+	 */
+	public void invalidate () { numKnown = -1; }
+
+	/**
+	 * setupTiles
+	 * cut world into tiles, at least minSize on a side, and color them.
+	 */
+	protected void setupTiles ( int minSize ) {
+		int sizeX = world.getSizeX(), sizeY = world.getSizeY();
+		tilesX = evenTiles( sizeX / minSize );
+		tilesY = evenTiles( sizeY / minSize );
+		numTiles = tilesX * tilesY;
+		tileOfX = new int[sizeX];
+		for ( int x = 0; x < sizeX; ++x )
+			tileOfX[x] = (int) ( (long) x * tilesX / sizeX );
+		tileOfY = new int[sizeY];
+		for ( int y = 0; y < sizeY; ++y )
+			tileOfY[y] = (int) ( (long) y * tilesY / sizeY );
+
+		int[] numOfColor = new int[4];
+		for ( int t = 0; t < numTiles; ++t )
+			++numOfColor[ colorOf( t ) ];
+		for ( int c = 0; c < 4; ++c )
+			tilesOfColor[c] = new int[ numOfColor[c] ];
+		Arrays.fill( numOfColor, 0 );
+		for ( int t = 0; t < numTiles; ++t ) {
+			int c = colorOf( t );
+			tilesOfColor[c][ numOfColor[c]++ ] = t;
+		}
+
+		tileAnts = new Ant[numTiles][];
+		fromCell = new int[numTiles][];
+		tileCount = new int[numTiles];
+		for ( int t = 0; t < numTiles; ++t ) {
+			tileAnts[t] = new Ant[16];
+			fromCell[t] = new int[16];
+		}
+		numKnown = 0;
+	}
+
+	// the tiles on a side of the torus must be even for the coloring,
+	// unless there is just 1 (which touches only itself)
+	protected static int evenTiles ( int n ) {
+		if ( n < 2 )
+			return 1;
+		return n & ~1;
+	}
+
+	protected final int colorOf ( int t ) {
+		return ( t % tilesX & 1 ) + 2 * ( t / tilesX & 1 );
+	}
+
+	public final int tileOf ( int x, int y ) {
+		return tileOfY[y] * tilesX + tileOfX[x];
+	}
+
+	protected void addToTile ( int t, Ant ant ) {
+		if ( tileCount[t] == tileAnts[t].length ) {
+			tileAnts[t] = Arrays.copyOf( tileAnts[t], 2 * tileCount[t] );
+			fromCell[t] = Arrays.copyOf( fromCell[t], 2 * tileCount[t] );
+		}
+		tileAnts[t][ tileCount[t]++ ] = ant;
+	}
+
+	/**
+	 * activate
+	 * step all the ants on antList, with stepKey keying their streams.
+	 * Dead ants are removed from the world, the population and antList,
+	 * which otherwise keeps its order.
+	 */
+	public void activate ( ArrayList<Ant> antList, long stepKey ) {
+		this.stepKey = stepKey;
+		int minSize = Math.max( tileSize, 2 * model.getSenseRadius() );
+		if ( world != Ant.world || tileAnts == null || numKnown < 0
+			 || numKnown > antList.size() || minSize != tileMinSize ) {
+			world = Ant.world;
+			tileMinSize = minSize;
+			setupTiles( minSize );
+		}
+		// ants added since the last step
+		for ( int i = numKnown; i < antList.size(); ++i ) {
+			Ant ant = antList.get( i );
+			addToTile( tileOf( ant.getX(), ant.getY() ), ant );
+		}
+
+		world.setConcurrentMoves( true );
+		for ( int c = 0; c < 4; ++c ) {
+			int[] tiles = tilesOfColor[c];
+			if ( numThreads > 1 && tiles.length > 1 )
+				pool.invoke( new StepTiles( tiles, 0, tiles.length,
+											Math.min( numThreads, tiles.length ) ) );
+			else
+				for ( int k = 0; k < tiles.length; ++k )
+					stepTile( tiles[k] );
+		}
+		world.setConcurrentMoves( false );
+
+		// bring the tiles, the world's indexes and the population up to date
+		int sizeX = world.getSizeX();
+		int numDied = 0, numMoved = 0;
+		for ( int t = 0; t < numTiles; ++t ) {
+			Ant[] ants = tileAnts[t];
+			int n = tileCount[t], kept = 0;
+			tileCount[t] = 0;
+			for ( int k = 0; k < n; ++k ) {
+				Ant ant = ants[k];
+				int from = fromCell[t][k];
+				world.syncFreeCells( from % sizeX, from / sizeX );
+				ants[k] = null;
+				if ( !ant.getLive() ) {
+					model.antPop.remove( ant );
+					++numDied;
+					continue;
+				}
+				world.syncFreeCells( ant.getX(), ant.getY() );
+				if ( tileOf( ant.getX(), ant.getY() ) == t )
+					ants[kept++] = ant;
+				else {									// its crossed into another tile
+					if ( numMoved == moved.length )
+						moved = Arrays.copyOf( moved, 2 * numMoved );
+					moved[numMoved++] = ant;
+				}
+			}
+			tileCount[t] = kept;
+		}
+		for ( int k = 0; k < numMoved; ++k ) {
+			addToTile( tileOf( moved[k].getX(), moved[k].getY() ), moved[k] );
+			moved[k] = null;
+		}
+		model.deathsPerStep += numDied;
+
+		// drop the dead from antList, keeping its order
+		if ( numDied > 0 ) {
+			int kept = 0;
+			for ( int i = 0; i < antList.size(); ++i ) {
+				Ant ant = antList.get( i );
+				if ( ant.index >= 0 )
+					antList.set( kept++, ant );
+			}
+			antList.subList( kept, antList.size() ).clear();
+		}
+		numKnown = antList.size();
+	}
+
+	/**
+	 * stepTile
+	 * step each ant in tile t, in order, noting where it started.
+	 * A dead ant's cell is emptied at once (as in the sequential orders),
+	 * but it stays on the tile's list until the end of the step.
+	 */
+	protected void stepTile ( int t ) {
+		Ant.Scratch s = scratches.get();
+		Ant[] ants = tileAnts[t];
+		int[] from = fromCell[t];
+		int sizeX = world.getSizeX();
+		for ( int k = 0, n = tileCount[t]; k < n; ++k ) {
+			Ant ant = ants[k];
+			from[k] = ant.getY() * sizeX + ant.getX();
+			s.random.setStream( stepKey, ant.getId() );
+			if ( !ant.step( s ) )
+				world.putObjectAt( ant.getX(), ant.getY(), null );
+		}
+	}
+
+	protected class StepTiles extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		final int[] tiles;
+		final int from, to, numParts;
+
+		StepTiles ( int[] tiles, int from, int to, int numParts ) {
+			this.tiles = tiles;
+			this.from = from;
+			this.to = to;
+			this.numParts = numParts;
+		}
+
+		protected void compute () {
+			if ( numParts <= 1 ) {
+				for ( int k = from; k < to; ++k )
+					stepTile( tiles[k] );
+				return;
+			}
+			int lowParts = numParts / 2;
+			int mid = from + (int) ( (long) ( to - from ) * lowParts / numParts );
+			invokeAll( new StepTiles( tiles, from, mid, lowParts ),
+					   new StepTiles( tiles, mid, to, numParts - lowParts ) );
+		}
+	}
+
+}
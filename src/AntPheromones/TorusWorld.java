@@ -8,6 +8,13 @@ so that moveObject now moves things around a torus.
 Also provides x/y-norm methods to return torus-normalized
 values for raw x,y values.
 
+With setGhostWidth(g), g > 0, it also keeps a padded byte copy of
+the occupancy, with a ghost border g cells wide on every side holding
+the wrapped-around cells, so neighborhoods of radius up to g can be read
+with straight-line indexing (see ghostIndex) and no xnorm/ynorm.
+Ants move one at a time, so unlike the pheromone ghosts (see
+PheromoneField.refreshGhosts) these are kept current by putObjectAt.
+
 */
 
 import java.awt.Point;
@@ -15,11 +22,66 @@ import java.util.ArrayList;
 
 public class TorusWorld extends GridWorld {
 
+	public int		ghostWidth = 0;		// width of ghost border, 0 for none
+	public int		ghostStride;		// row length of ghostOccupied
+	public byte[]	ghostOccupied;		// 1 where occupied, with ghost border
+
 	public TorusWorld ( int sizeX, int sizeY, Model aModel ) {
 		super( sizeX, sizeY, aModel );
 	}
 
 
+	/**
+	 * setGhostWidth
+	 * keep a padded copy of the occupancy with a ghost border g cells
+	 * wide (0 for none).  g can be at most half the size of the world.
+	 */
+	public void setGhostWidth ( int g ) {
+		if ( g < 0 || 2 * g > xSize || 2 * g > ySize ) {
+			System.err.printf( "\nTorusWorld: ghost width %d too big for %dx%d world!\n",
+							   g, xSize, ySize );
+			g = 0;
+		}
+		ghostWidth = g;
+		if ( g == 0 ) {
+			ghostOccupied = null;
+			return;
+		}
+		ghostStride = xSize + 2 * g;
+		ghostOccupied = new byte[ ghostStride * ( ySize + 2 * g ) ];
+		for ( int y = -g; y < ySize + g; ++y ) {
+			for ( int x = -g; x < xSize + g; ++x )
+				ghostOccupied[ ghostIndex( x, y ) ] = (byte) ( isOpen( xnorm( x ), ynorm( y ) ) ? 0 : 1 );
+		}
+	}
+
+	/**
+	 * ghostIndex
+	 * @return index in ghostOccupied of x,y, for x,y in -g..size+g-1
+	 */
+	public final int ghostIndex ( int x, int y ) {
+		return ( y + ghostWidth ) * ghostStride + x + ghostWidth;
+	}
+
+	/**
+	 * putObjectAt
+	 * as in GridWorld, and update the cell and its ghosts in ghostOccupied.
+	 */
+	public void putObjectAt ( int x, int y, Object obj ) {
+		super.putObjectAt( x, y, obj );
+		if ( ghostWidth == 0 )
+			return;
+		byte v = (byte) ( obj == null ? 0 : 1 );
+		int g = ghostWidth;
+		// the ghost column and row of x,y, if it is within g of an edge
+		int gx = ( x < g ? x + xSize : ( x >= xSize - g ? x - xSize : x ) );
+		int gy = ( y < g ? y + ySize : ( y >= ySize - g ? y - ySize : y ) );
+		ghostOccupied[ ghostIndex( x, y ) ] = v;
+		ghostOccupied[ ghostIndex( gx, y ) ] = v;
+		ghostOccupied[ ghostIndex( x, gy ) ] = v;
+		ghostOccupied[ ghostIndex( gx, gy ) ] = v;
+	}
+
 	/**
 	 * moveObject
 	 * @param ObjectInGrid
@@ -39,7 +101,7 @@ public class TorusWorld extends GridWorld {
 		int newY = ynorm( obj.getY() + dY );
 
 		// see if new cell is empty.
-		if ( getObjectAt( newX, newY ) != null ) {
+		if ( !isOpen( newX, newY ) ) {
 			return false;
 		}
 
@@ -75,7 +137,7 @@ public class TorusWorld extends GridWorld {
 			for ( int tx = minX; tx <= maxX; ++tx ) {
 				int txnorm = xnorm( tx );				// normalize for torus
 				int tynorm = ynorm( ty );
-				if ( getObjectAt( txnorm, tynorm ) == null ) { // its open
+				if ( isOpen( txnorm, tynorm ) ) { // its open
 					Point p = new Point( txnorm, tynorm );
 					ptList.add( p );
 				}
@@ -85,6 +147,39 @@ public class TorusWorld extends GridWorld {
 		return ptList;
 	}
 
+	/**
+	 * getOpenNeighborMask
+	 * @param int x
+	 * @param int y
+	 * @return a 9-bit mask of the unoccupied cells in the Moore neighborhood
+	 * around x,y (which must be in the world), bit (dy+1)*3 + (dx+1) for
+	 * the cell at x+dx,y+dy.  So the bits are in the same order as the
+	 * Points from getOpenNeighborLocations, but nothing is allocated.
+	 * Notes: includes bit 4 for x,y if its open.
+	 */
+	public int getOpenNeighborMask ( int x, int y ) {
+		if ( ghostWidth > 0 ) {  // no wraparound needed
+			byte[] occ = ghostOccupied;
+			int mask = 0, i = ghostIndex( x - 1, y - 1 );
+			for ( int bit = 0; bit < 9; bit += 3, i += ghostStride ) {
+				mask |= ( ( occ[i] ^ 1 ) | ( ( occ[i+1] ^ 1 ) << 1 )
+						  | ( ( occ[i+2] ^ 1 ) << 2 ) ) << bit;
+			}
+			return mask;
+		}
+		int xl = ( x == 0 ? xSize - 1 : x - 1 );
+		int xr = ( x == xSize - 1 ? 0 : x + 1 );
+		int mask = 0, bit = 0;
+		for ( int dy = -1; dy <= 1; ++dy ) {
+			int ty = ynorm( y + dy );
+			if ( isOpen( xl, ty ) ) mask |= 1 << bit;
+			if ( isOpen( x, ty ) )  mask |= 2 << bit;
+			if ( isOpen( xr, ty ) ) mask |= 4 << bit;
+			bit += 3;
+		}
+		return mask;
+	}
+
 	/**
 	 * xnorm
 	 * return torus-normalized values for raw x value.
@@ -0,0 +1,148 @@
+package AntPheromones;
+
+/**
+TournamentSelector
+
+Tournament selection of parents, as Model has always done it, but
+without making a list of the contestants and sorting it for each one:
+* draw k contestants from the ants at random (some could be there
+  twice), noting each one's probDieCenter -- lower is fitter;
+* go down the contestants from fittest to least fit, each winning
+  with probability bestWinsProb; if none has won, the least fit wins.
+
+Going down the sorted list just counts the draws until one wins, so the
+winner is the contestant of that rank, r.  Here the contestants are
+kept in reused int and double arrays, and the one of rank r is found
+by partial selection (quickselect), which is O(k) rather than the
+O(k log k) of a sort; r is nearly always 0, which is a single scan for
+the fittest.  Ties in probDieCenter are ranked by the order the
+contestants were drawn in, as the (stable) sort did, and the draws are
+the same, so the same parents win as with the sort.
+
+selectParents picks a batch of parents, from the ants as they are,
+in one call.
+
+*/
+
+import java.util.ArrayList;
+
+public class TournamentSelector {
+
+	protected int[]		contestant = new int[16];	// index in the ant list of each
+	protected double[]	key = new double[16];		// and its probDieCenter
+	protected int[]		order = new int[16];		// scratch for the selection
+	protected int		numContestants = 0;
+
+	/**
+	 * select
+	 * run a tournament of tSize ants drawn from ants (which mustn't be empty),
+	 * using r for all the draws.
+	 * @return the index in ants of the winner
+	 */
+	public int select ( RandomSource r, ArrayList<Ant> ants, int tSize, double bestWinsProb ) {
+		int k = Math.max( 1, tSize );
+		if ( contestant.length < k ) {
+			contestant = new int[k];
+			key = new double[k];
+			order = new int[k];
+		}
+		numContestants = k;
+
+		// get the contestants
+		int antsMax = ants.size() - 1;
+		for ( int i = 0; i < k; ++i ) {
+			int c = r.nextIntFromTo( 0, antsMax );
+			contestant[i] = c;
+			key[i] = ants.get( c ).getProbDieCenter();
+		}
+
+		// how far down the ranking the winner is (the last wins by default)
+		int rank = 0;
+		while ( rank < k && !( bestWinsProb > r.nextDouble() ) )
+			++rank;
+		if ( rank == k )
+			rank = k - 1;
+
+		return contestant[ positionOfRank( rank ) ];
+	}
+
+	/**
+	 * selectParents
+	 * run numParents tournaments among ants, putting the index in ants of
+	 * each winner in parents.
+	 * @return parents, or a new array if it was too short
+	 */
+	public int[] selectParents ( RandomSource r, ArrayList<Ant> ants, int numParents,
+								 int tSize, double bestWinsProb, int[] parents ) {
+		if ( parents == null || parents.length < numParents )
+			parents = new int[numParents];
+		for ( int p = 0; p < numParents; ++p )
+			parents[p] = select( r, ants, tSize, bestWinsProb );
+		return parents;
+	}
+
+	/**
+	 * keyOfRank
+	 * @return probDieCenter of the contestant of rank in the last tournament
+	 */
+	public double keyOfRank ( int rank ) {
+		return key[ positionOfRank( rank ) ];
+	}
+
+	public int getNumContestants () { return numContestants; }
+
+	// contestant at position a ranks before the one at b
+	protected final boolean before ( int a, int b ) {
+		return key[a] < key[b] || ( key[a] == key[b] && a < b );
+	}
+
+	/**
+	 * positionOfRank
+	 * @return position (in draw order) of the contestant of rank in the
+	 * last tournament, 0 the fittest.
+	 */
+	protected int positionOfRank ( int rank ) {
+		int k = numContestants;
+		if ( rank == 0 || rank == k - 1 ) {		// just scan for the fittest or least fit
+			int best = 0;
+			for ( int i = 1; i < k; ++i )
+				if ( rank == 0 ? before( i, best ) : before( best, i ) )
+					best = i;
+			return best;
+		}
+
+		int[] p = order;
+		for ( int i = 0; i < k; ++i )
+			p[i] = i;
+		int lo = 0, hi = k - 1;
+		while ( lo < hi ) {
+			// partition lo..hi around the median of its ends and middle
+			int mid = ( lo + hi ) >>> 1;
+			if ( before( p[mid], p[lo] ) )
+				swap( p, lo, mid );
+			if ( before( p[hi], p[lo] ) )
+				swap( p, lo, hi );
+			if ( before( p[mid], p[hi] ) )
+				swap( p, mid, hi );
+			int pivot = p[hi], store = lo;
+			for ( int i = lo; i < hi; ++i )
+				if ( before( p[i], pivot ) )
+					swap( p, i, store++ );
+			swap( p, store, hi );
+			if ( store == rank )
+				return p[store];
+			if ( rank < store )
+				hi = store - 1;
+			else
+				lo = store + 1;
+		}
+		return p[rank];
+	}
+
+	protected static void swap ( int[] p, int i, int j ) {
+		int t = p[i];
+		p[i] = p[j];
+		p[j] = t;
+	}
+
+}
@@ -0,0 +1,105 @@
+package AntPheromones;
+
+/**
+TruncatedNormal
+
+Draws from a normal (mean, sd) restricted to [low,high], exactly, for
+a bounded expected number of draws wherever [low,high] lies.  Drawing
+normals until one lands in range (as getNormalDoubleProb does) takes
+about 2 tries when the mean is at an end of the range, and very many
+when the range is narrow compared to sd or far out in a tail.
+
+This is Robert's algorithm (C. P. Robert, "Simulation of truncated
+normal variables", Statistics and Computing 5, 1995).  With
+z = (x - mean) / sd, restricted to [a,b]:
+* a < 0 < b: if b - a >= sqrt(2 pi), draw normals until one is in
+  [a,b] (at least about half are); else draw z uniform in [a,b] and
+  accept it with probability exp(-z^2/2);
+* 0 <= a: either z uniform in [a,b], accepted with probability
+  exp((a^2 - z^2)/2), or z = a + an exponential with the best rate
+       alpha = (a + sqrt(a^2 + 4)) / 2
+  accepted if it is <= b, with probability exp(-(z - alpha)^2/2),
+  whichever accepts more often for this a and b (Robert's rule);
+* b <= 0: the same as -b <= -z <= -a.
+Each loop accepts at least about half the time.
+
+Compared with redrawing mean + N(0,sd) until it is in [0,1], as the
+model does with truncatedNormal 0 (getNormalDoubleProb, mutateProb):
+* only when the mean is strictly inside (0,1) (so a < 0 < b) and
+  0 < sd <= 1/sqrt(2 pi) = 0.3989 (so b - a = 1/sd >= sqrt(2 pi)) does
+  this take the same normals from the source, and so leave it in the
+  same state.  Even then this works out mean + sd * z from a standard
+  normal z, and the source's nextNormal(mean, sd) multiplies in its own
+  order, so the two can differ in the last bit (by up to 2e-16): it is
+  NOT bit-identical, and a run's results can change.
+* otherwise it takes different draws -- a mean of exactly 0 or 1 (eg
+  a trait at its bound), a wider sd, or sd = 0 (which returns the
+  mean without drawing) -- so the results change.
+
+*/
+
+public class TruncatedNormal {
+
+	protected static final double sqrt2Pi = Math.sqrt( 2.0 * Math.PI );
+
+	/**
+	 * sample
+	 * @return a draw from normal (mean, sd) truncated to [low,high], using r
+	 */
+	public static double sample ( RandomSource r, double mean, double sd,
+								  double low, double high ) {
+		if ( sd <= 0.0 )
+			return Math.min( Math.max( mean, low ), high );
+		double z = sampleStandard( r, ( low - mean ) / sd, ( high - mean ) / sd );
+		double x = mean + sd * z;
+		return Math.min( Math.max( x, low ), high );	// in case of rounding
+	}
+
+	/**
+	 * sampleStandard
+	 * @return a draw from normal (0,1) truncated to [a,b]
+	 */
+	public static double sampleStandard ( RandomSource r, double a, double b ) {
+		if ( a >= 0.0 )
+			return sampleUpper( r, a, b );
+		if ( b <= 0.0 )
+			return -sampleUpper( r, -b, -a );
+		if ( b - a >= sqrt2Pi ) {
+			while ( true ) {
+				double z = r.nextNormal( 0.0, 1.0 );
+				if ( z >= a && z <= b )
+					return z;
+			}
+		}
+		while ( true ) {
+			double z = a + ( b - a ) * r.nextDouble();
+			if ( r.nextDouble() <= Math.exp( -0.5 * z * z ) )
+				return z;
+		}
+	}
+
+	/**
+	 * sampleUpper
+	 * @return a draw from normal (0,1) truncated to [a,b], 0 <= a < b
+	 */
+	protected static double sampleUpper ( RandomSource r, double a, double b ) {
+		double root = Math.sqrt( a * a + 4.0 );
+		double alpha = 0.5 * ( a + root );
+		if ( b - a < ( 2.0 / ( a + root ) ) * Math.exp( 0.25 * ( a * a - a * root ) + 0.5 ) ) {
+			while ( true ) {
+				double z = a + ( b - a ) * r.nextDouble();
+				if ( r.nextDouble() <= Math.exp( 0.5 * ( a * a - z * z ) ) )
+					return z;
+			}
+		}
+		while ( true ) {
+			double z = a - Math.log( 1.0 - r.nextDouble() ) / alpha;
+			if ( z > b )
+				continue;
+			double d = z - alpha;
+			if ( r.nextDouble() <= Math.exp( -0.5 * d * d ) )
+				return z;
+		}
+	}
+
+}
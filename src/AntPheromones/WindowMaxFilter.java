@@ -0,0 +1,100 @@
+package AntPheromones;
+
+/**
+WindowMaxFilter
+
+For each cell of the pheromone field, the largest value in the
+(2r+1) x (2r+1) window around it (wrapping around the torus), so an ant
+that senses r cells away knows the best value it can see without
+reading the whole window.
+
+The max filter is separable: build() first takes the max along each
+row (rowMax), then the max of those down each column (windowMax).
+Each 1D pass uses the van Herk / Gil-Werman method: cut the sequence
+into blocks of w = 2r+1 values, and take running maxes forward (g) and
+backward (h) within each block; any window of w values spans the end
+of one block and the start of the next, so its max is
+       max( h[start], g[start + w - 1] )
+which is 3 comparisons per value, whatever the radius.
+
+rowMax is kept too, so an ant can tell which rows of its window hold
+the max and only look for the max cells in those rows.
+
+*/
+
+public class WindowMaxFilter {
+
+	public int			sizeX, sizeY;
+	public int			radius;
+	protected double[]	rowMax;			// max of row y over x-r..x+r
+	protected double[]	windowMax;		// max of window around x,y
+
+	// scratch for the 1D passes
+	protected double[]	in, out, g, h;
+
+	public WindowMaxFilter ( int sizeX, int sizeY, int radius ) {
+		this.sizeX = sizeX;
+		this.sizeY = sizeY;
+		this.radius = radius;
+		rowMax = new double[ sizeX * sizeY ];
+		windowMax = new double[ sizeX * sizeY ];
+		int n = Math.max( sizeX, sizeY );
+		in = new double[n];
+		out = new double[n];
+		g = new double[ n + 2 * radius ];
+		h = new double[ n + 2 * radius ];
+	}
+
+	public final double getWindowMax ( int x, int y ) { return windowMax[ y * sizeX + x ]; }
+	public final double getRowMax ( int x, int y ) { return rowMax[ y * sizeX + x ]; }
+
+	/**
+	 * build
+	 * compute rowMax and windowMax from field's read copy.
+	 */
+	public void build ( PheromoneField field ) {
+		// along the rows
+		for ( int y = 0; y < sizeY; ++y ) {
+			field.getRow( y, in );
+			slidingMax( sizeX );
+			System.arraycopy( out, 0, rowMax, y * sizeX, sizeX );
+		}
+		// down the columns
+		for ( int x = 0; x < sizeX; ++x ) {
+			for ( int y = 0, i = x; y < sizeY; ++y, i += sizeX )
+				in[y] = rowMax[i];
+			slidingMax( sizeY );
+			for ( int y = 0, i = x; y < sizeY; ++y, i += sizeX )
+				windowMax[i] = out[y];
+		}
+	}
+
+	/**
+	 * slidingMax
+	 * out[i] = max of in[i-r..i+r], wrapping around in[0..n-1].
+	 */
+	protected void slidingMax ( int n ) {
+		int r = radius, w = 2 * r + 1;
+		if ( w >= n ) {  // every window is the whole ring
+			double m = in[0];
+			for ( int i = 1; i < n; ++i )
+				m = Math.max( m, in[i] );
+			for ( int i = 0; i < n; ++i )
+				out[i] = m;
+			return;
+		}
+		// the ring, extended by r on each end, is e[j] = in[(j-r) mod n]
+		int len = n + 2 * r;
+		for ( int j = 0; j < len; ++j ) {
+			double e = in[ ( j - r + n ) % n ];
+			g[j] = ( j % w == 0 ) ? e : Math.max( g[j - 1], e );
+		}
+		for ( int j = len - 1; j >= 0; --j ) {
+			double e = in[ ( j - r + n ) % n ];
+			h[j] = ( j % w == w - 1 || j == len - 1 ) ? e : Math.max( h[j + 1], e );
+		}
+		for ( int i = 0; i < n; ++i )
+			out[i] = Math.max( h[i], g[i + w - 1] );
+	}
+
+}
@@ -0,0 +1,171 @@
+package AntPheromones;
+
+/**
+XoshiroRandomSource
+
+A fast RandomSource for the draws made one after another on one thread
+(the model's, and the ants' when they are stepped in order): xoshiro256++
+(Blackman and Vigna, "Scrambled linear pseudorandom number generators",
+2021), with 256 bits of state seeded from the model's seed by SplitMix64.
+
+The generator fills buffers of doubles and of ints in bulk, in a tight
+loop with the state in registers, and the draws just read the next one
+out of the buffer; each buffer is refilled when it runs out.
+* nextDouble -- 53 random bits, scaled to [0,1);
+* nextIntFromTo -- unbiased, by Lemire's multiply-and-reject (one
+  multiply, and almost never a second draw or a division);
+* nextNeighborIndex -- one of the 8 neighbors from one bounded int,
+  instead of drawing dx,dy pairs until they aren't both 0.
+
+It is one stream, so setStream does nothing, and like the Colt source
+it is for one thread: give each thread its own.
+
+*/
+
+public class XoshiroRandomSource implements RandomSource {
+
+	public static final int bufferSize = 256;
+
+	protected long		s0, s1, s2, s3;		// the state
+	protected double[]	doubles = new double[bufferSize];
+	protected int		nextDoubleAt = bufferSize;	// next one to use
+	protected int[]		ints = new int[bufferSize];
+	protected int		nextIntAt = bufferSize;
+	protected double	spareNormal;		// second of the Box-Muller pair
+	protected boolean	haveSpare = false;
+
+	public XoshiroRandomSource ( long seed ) {
+		SplitMix64 sm = new SplitMix64( seed );
+		s0 = sm.nextLong();
+		s1 = sm.nextLong();
+		s2 = sm.nextLong();
+		s3 = sm.nextLong();
+	}
+
+	public void setStream ( long key, long streamId ) { }
+
+	/**
+	 * nextRaw
+	 * @return the next 64 bits straight from the generator
+	 */
+	public final long nextRaw () {
+		long r = Long.rotateLeft( s0 + s3, 23 ) + s0;
+		long t = s1 << 17;
+		s2 ^= s0;
+		s3 ^= s1;
+		s1 ^= s2;
+		s0 ^= s3;
+		s2 ^= t;
+		s3 = Long.rotateLeft( s3, 45 );
+		return r;
+	}
+
+	/**
+	 * fillDoubles
+	 * refill the double buffer, 53 bits each.
+	 */
+	protected void fillDoubles () {
+		long a = s0, b = s1, c = s2, d = s3;
+		double[] buf = doubles;
+		for ( int i = 0; i < bufferSize; ++i ) {
+			long r = Long.rotateLeft( a + d, 23 ) + a;
+			long t = b << 17;
+			c ^= a;
+			d ^= b;
+			b ^= c;
+			a ^= d;
+			c ^= t;
+			d = Long.rotateLeft( d, 45 );
+			buf[i] = ( r >>> 11 ) * 0x1.0p-53;
+		}
+		s0 = a;
+		s1 = b;
+		s2 = c;
+		s3 = d;
+		nextDoubleAt = 0;
+	}
+
+	/**
+	 * fillInts
+	 * refill the int buffer, two from each 64 bits.
+	 */
+	protected void fillInts () {
+		long a = s0, b = s1, c = s2, d = s3;
+		int[] buf = ints;
+		for ( int i = 0; i < bufferSize; i += 2 ) {
+			long r = Long.rotateLeft( a + d, 23 ) + a;
+			long t = b << 17;
+			c ^= a;
+			d ^= b;
+			b ^= c;
+			a ^= d;
+			c ^= t;
+			d = Long.rotateLeft( d, 45 );
+			buf[i] = (int) ( r >>> 32 );
+			buf[i + 1] = (int) r;
+		}
+		s0 = a;
+		s1 = b;
+		s2 = c;
+		s3 = d;
+		nextIntAt = 0;
+	}
+
+	public final double nextDouble () {
+		if ( nextDoubleAt == bufferSize )
+			fillDoubles();
+		return doubles[ nextDoubleAt++ ];
+	}
+
+	public double nextDoubleFromTo ( double low, double high ) {
+		return low + ( high - low ) * nextDouble();
+	}
+
+	protected final int nextInt () {
+		if ( nextIntAt == bufferSize )
+			fillInts();
+		return ints[ nextIntAt++ ];
+	}
+
+	/**
+	 * nextIntFromTo
+	 * @return uniform int in [low,high], with no bias: the top half of
+	 * random32 * range is the answer, unless the bottom half falls in
+	 * the 2^32 mod range values that would make some answers more likely.
+	 */
+	public final int nextIntFromTo ( int low, int high ) {
+		long range = (long) high - low + 1;
+		if ( range > 0xffffffffL )				// the whole int range
+			return nextInt();
+		long m = ( nextInt() & 0xffffffffL ) * range;
+		if ( ( m & 0xffffffffL ) < range ) {	// might be biased
+			long threshold = ( 0x100000000L - range ) % range;
+			while ( ( m & 0xffffffffL ) < threshold )
+				m = ( nextInt() & 0xffffffffL ) * range;
+		}
+		return (int) ( low + ( m >>> 32 ) );
+	}
+
+	public long nextLong () {
+		return ( (long) nextInt() << 32 ) | ( nextInt() & 0xffffffffL );
+	}
+
+	public double nextNormal ( double mean, double sd ) {
+		if ( haveSpare ) {
+			haveSpare = false;
+			return mean + sd * spareNormal;
+		}
+		double u1 = 1.0 - nextDouble();		// in (0,1], so the log is finite
+		double u2 = nextDouble();
+		double r = Math.sqrt( -2.0 * Math.log( u1 ) );
+		spareNormal = r * Math.sin( 2.0 * Math.PI * u2 );
+		haveSpare = true;
+		return mean + sd * r * Math.cos( 2.0 * Math.PI * u2 );
+	}
+
+	public int nextNeighborIndex () {
+		int k = nextIntFromTo( 0, 7 );
+		return k < 4 ? k : k + 1;		// skip 4, the cell itself
+	}
+
+}
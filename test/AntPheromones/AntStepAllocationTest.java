@@ -0,0 +1,85 @@
+package AntPheromones;
+
+/**
+AntStepAllocationTest
+
+Once warmed up, stepping the ants must allocate nothing on the heap:
+the bytes the thread allocates (ThreadMXBean.getThreadAllocatedBytes)
+over some steps of every ant are checked to be 0, for
+* step(), drawing from Ant.random with Ant.scratch, as the sequential
+  orders do;
+* step(s) and proposeStep(s) with a Scratch of their own, its stream
+  set for each ant, as the tiled and parallel orders' threads do;
+with senseRadius 1 and 2 (which scan the window differently).
+The model is built as BatchModel would build it, but the ants are
+stepped directly, so births, deaths and reports don't come into it.
+
+NB: needs a JVM whose ThreadMXBean is a com.sun.management.ThreadMXBean
+(HotSpot and OpenJ9 are).
+
+*/
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+
+public class AntStepAllocationTest {
+
+	static final int warmUpSteps = 2000, steps = 200;
+
+	static com.sun.management.ThreadMXBean threads =
+		(com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+	static long threadId = Thread.currentThread().getId();
+
+	public static void main ( String[] args ) {
+		for ( int radius = 1; radius <= 2; ++radius ) {
+			Model m = new Model();
+			m.setSeed( 7 );
+			m.setRandomSource( Model.counterRandomSource );
+			m.setupParametersMap();
+			m.userSetup();
+			m.userBuildModel();
+			m.setSenseRadius( radius );
+			ArrayList<Ant> ants = m.antList;
+			Ant.Scratch s = new Ant.Scratch( m.newAntStream() );
+
+			for ( int mode = 0; mode < 3; ++mode )
+				stepAll( ants, s, mode, warmUpSteps );
+			long overhead = allocated( ants, s, 0, 0 );
+			check( radius, "step()", allocated( ants, s, 0, steps ) - overhead );
+			check( radius, "step(s)", allocated( ants, s, 1, steps ) - overhead );
+			check( radius, "proposeStep(s)", allocated( ants, s, 2, steps ) - overhead );
+		}
+		Check.done();
+	}
+
+	static void check ( int radius, String mode, long bytes ) {
+		Check.that( bytes <= 0, "senseRadius %d, %s: %d bytes allocated in %d steps",
+					radius, mode, bytes, steps );
+	}
+
+	// bytes allocated stepping every ant n times
+	static long allocated ( ArrayList<Ant> ants, Ant.Scratch s, int mode, int n ) {
+		long before = threads.getThreadAllocatedBytes( threadId );
+		stepAll( ants, s, mode, n );
+		return threads.getThreadAllocatedBytes( threadId ) - before;
+	}
+
+	// mode 0 = step(), 1 = step(s), 2 = proposeStep(s)
+	static void stepAll ( ArrayList<Ant> ants, Ant.Scratch s, int mode, int n ) {
+		for ( int t = 0; t < n; ++t ) {
+			for ( int i = 0, size = ants.size(); i < size; ++i ) {
+				Ant ant = ants.get( i );
+				if ( mode == 0 )
+					ant.step();
+				else {
+					s.random.setStream( t, ant.getId() );
+					if ( mode == 1 )
+						ant.step( s );
+					else
+						ant.proposeStep( s );
+				}
+			}
+		}
+	}
+
+}
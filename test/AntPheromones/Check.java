@@ -0,0 +1,35 @@
+package AntPheromones;
+
+/**
+Check
+
+What the tests report with: each check prints a line saying ok or FAIL,
+and done() exits with status 1 if any failed, so test/run-tests.sh
+(or a make or CI job) can tell.
+
+*/
+
+public class Check {
+
+	protected static int numFailed = 0;
+
+	/**
+	 * that
+	 * report whether ok, described by the printf format and args.
+	 */
+	public static void that ( boolean ok, String format, Object... args ) {
+		System.out.printf( "  %-4s ", ok ? "ok" : "FAIL" );
+		System.out.printf( format, args );
+		System.out.printf( "\n" );
+		if ( !ok )
+			++numFailed;
+	}
+
+	public static void done () {
+		if ( numFailed > 0 ) {
+			System.out.printf( "  %d check(s) failed.\n", numFailed );
+			System.exit( 1 );
+		}
+	}
+
+}
@@ -0,0 +1,109 @@
+package AntPheromones;
+
+/**
+Diffuse2DTest
+
+PheromoneField must agree with the Repast Diffuse2D it replaced to
+within PheromoneField.DIFFUSE2D_TOLERANCE (relative), in every mode:
+all three kernels, several threads, the active region, and the
+temporally blocked diffuseSteps.  (The vectorKernel is the rowKernel
+again unless src-vector is compiled in.)  Each field is run the way the
+model warms up its pSpace -- inject at the source, then diffuse -- next
+to a Diffuse2D doing the same.  The modes must also agree with each
+other exactly, as they promise bit-identical results.
+
+NB: this is only meaningful against the real Repast Diffuse2D, so the
+agreement is only checked if Diffuse2D was loaded from a jar; from
+anywhere else (a stand-in on a class directory, say) the differences
+are printed but not checked.  The first line says where it came from.
+
+*/
+
+import uchicago.src.sim.space.Diffuse2D;
+
+public class Diffuse2DTest {
+
+	static final int steps = 150;
+	static final double maxPher = 32000, exogRate = 0.30;
+
+	static boolean fromJar;		// is Diffuse2D from a jar (Repast's)?
+
+	public static void main ( String[] args ) {
+		java.security.CodeSource src = Diffuse2D.class.getProtectionDomain().getCodeSource();
+		String where = src == null ? "?" : src.getLocation().getPath();
+		fromJar = where.endsWith( ".jar" );
+		System.out.printf( "  Diffuse2D from %s%s\n", where,
+						   fromJar ? "" : " -- not a jar, so agreement with it is NOT checked" );
+		int[][] sizes = { { 50, 50 }, { 37, 23 }, { 300, 200 } };
+		double[][] rates = { { 0.90, 1.00 }, { 0.50, 0.99 } };
+		for ( int[] s : sizes ) {
+			for ( double[] r : rates ) {
+				Diffuse2D d2d = new Diffuse2D( r[0], r[1], s[0], s[1] );
+				run( d2d, s[0], s[1] );
+				PheromoneField ref = new PheromoneField( r[0], r[1], s[0], s[1] );
+				run( ref, s[0], s[1] );
+				for ( int kernel = 0; kernel <= 2; ++kernel ) {
+					for ( int threads = 1; threads <= 3; threads += 2 ) {
+						PheromoneField f = new PheromoneField( r[0], r[1], s[0], s[1] );
+						f.setKernel( kernel );
+						f.setNumThreads( threads );
+						run( f, s[0], s[1] );
+						report( f, ref, d2d, s, r, "kernel " + kernel + ", " + threads + " threads" );
+						f.shutdown();
+					}
+				}
+				PheromoneField f = new PheromoneField( r[0], r[1], s[0], s[1] );
+				f.setActiveRegion( true );
+				run( f, s[0], s[1] );
+				report( f, ref, d2d, s, r, "active region" );
+
+				f = new PheromoneField( r[0], r[1], s[0], s[1] );
+				f.putValueAt( s[0] / 2, s[1] / 2, initialPher() );
+				f.update();
+				f.diffuseSteps( steps, s[0] / 2, s[1] / 2, maxPher * exogRate, maxPher );
+				report( f, ref, d2d, s, r, "diffuseSteps" );
+			}
+		}
+		Check.done();
+	}
+
+	static double initialPher () {
+		return Math.min( 2.0 * maxPher * exogRate, maxPher );
+	}
+
+	// as Model.createPSpaceAndInjectInitialPheromone + the initial steps
+	static void run ( PheromoneField f, int sizeX, int sizeY ) {
+		int x = sizeX / 2, y = sizeY / 2;
+		f.putValueAt( x, y, initialPher() );
+		f.update();
+		for ( int i = 0; i < steps; ++i ) {
+			f.putValueAt( x, y, Math.min( maxPher * exogRate + f.getValueAt( x, y ), maxPher ) );
+			f.update();
+			f.diffuse();
+		}
+	}
+
+	static void run ( Diffuse2D d, int sizeX, int sizeY ) {
+		int x = sizeX / 2, y = sizeY / 2;
+		d.putValueAt( x, y, initialPher() );
+		d.update();
+		for ( int i = 0; i < steps; ++i ) {
+			d.putValueAt( x, y, Math.min( maxPher * exogRate + d.getValueAt( x, y ), maxPher ) );
+			d.update();
+			d.diffuse();
+		}
+	}
+
+	static void report ( PheromoneField f, PheromoneField ref, Diffuse2D d2d,
+						 int[] s, double[] r, String mode ) {
+		double d = f.maxRelativeDifference( d2d );
+		double same = f.maxAbsDifference( ref );
+		Check.that( ( d <= PheromoneField.DIFFUSE2D_TOLERANCE || !fromJar ) && same == 0.0,
+					"%dx%d dK=%.2f eR=%.2f %s: max rel diff %.3g (%s %.0e),"
+					+ " max diff from kernel 0 %.3g",
+					s[0], s[1], r[0], r[1], mode, d,
+					fromJar ? "tolerance" : "not checked, tolerance",
+					PheromoneField.DIFFUSE2D_TOLERANCE, same );
+	}
+
+}
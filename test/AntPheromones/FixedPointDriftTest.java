@@ -0,0 +1,59 @@
+package AntPheromones;
+
+/**
+FixedPointDriftTest
+
+How far a FixedPointPheromoneField drifts from the double field, run
+the way the model warms up its pSpace (inject at the source, then
+diffuse) for 500 steps, with and without evaporation, for both
+rounding modes.  The bounds are what each mode is documented to keep:
+* roundStochastic -- the total within 0.05% of the double field's, and
+  no cell off by more than 2 pheromone units (4 steps of the
+  resolution of about 0.49 at maxPher 32000);
+* roundNearest -- lossy: it always rounds the thin tails of the field
+  the same way, and with evaporation loses about 3% of the total by
+  500 steps; the bounds here (5% and 20 units) just catch it getting worse.
+
+*/
+
+public class FixedPointDriftTest {
+
+	static final int sizeX = 100, sizeY = 100, steps = 500;
+	static final double maxPher = 32000, exogRate = 0.30;
+
+	public static void main ( String[] args ) {
+		double[][] rates = { { 0.90, 1.00 }, { 0.50, 0.99 } };
+		for ( double[] r : rates ) {
+			PheromoneField d = new PheromoneField( r[0], r[1], sizeX, sizeY );
+			run( d );
+			check( d, r, FixedPointPheromoneField.roundStochastic, "stochastic", 0.05, 2.0 );
+			check( d, r, FixedPointPheromoneField.roundNearest, "nearest", 5.0, 20.0 );
+		}
+		Check.done();
+	}
+
+	static void check ( PheromoneField d, double[] r, int mode, String name,
+						double maxPercent, double maxCellDiff ) {
+		FixedPointPheromoneField f =
+			new FixedPointPheromoneField( r[0], r[1], sizeX, sizeY, maxPher, mode );
+		run( f );
+		double percent = 100.0 * ( f.getTotal() - d.getTotal() ) / d.getTotal();
+		double cellDiff = f.maxAbsDifference( d );
+		Check.that( Math.abs( percent ) <= maxPercent && cellDiff <= maxCellDiff,
+					"dK=%.2f eR=%.2f %s: total drift %.4f%% (bound %.2f%%),"
+					+ " max cell diff %.3f (bound %.1f)",
+					r[0], r[1], name, percent, maxPercent, cellDiff, maxCellDiff );
+	}
+
+	static void run ( PheromoneField f ) {
+		int x = sizeX / 2, y = sizeY / 2;
+		f.putValueAt( x, y, Math.min( 2.0 * maxPher * exogRate, maxPher ) );
+		f.update();
+		for ( int i = 0; i < steps; ++i ) {
+			f.putValueAt( x, y, Math.min( maxPher * exogRate + f.getValueAt( x, y ), maxPher ) );
+			f.update();
+			f.diffuse();
+		}
+	}
+
+}
@@ -0,0 +1,74 @@
+package AntPheromones;
+
+/**
+GhostBorderTest
+
+After refreshGhosts(), every cell of the padded copy, border and all,
+must be the value getValueAt gives for the cell it wraps to -- for the
+double field with and without the active region (where only the cells
+in the box then or now are copied), and for the fixed point field,
+whose padded copy is chars.  The field is run the way the model does:
+inject at the source, diffuse, refresh, with the source moved now and
+then so the box grows to the edges (and wraps) and shrinks again.
+
+*/
+
+public class GhostBorderTest {
+
+	static final int sizeX = 61, sizeY = 47, steps = 300;
+
+	public static void main ( String[] args ) {
+		for ( int g = 1; g <= 3; ++g ) {
+			PheromoneField f = new PheromoneField( 0.9, 0.95, sizeX, sizeY );
+			run( f, g, "double" );
+
+			// evaporating fast enough that the box dies away between sources
+			f = new PheromoneField( 0.9, 0.8, sizeX, sizeY );
+			f.setActiveRegion( true );
+			f.setFlushEpsilon( 0.5 );
+			run( f, g, "active region" );
+
+			f = new FixedPointPheromoneField( 0.9, 0.95, sizeX, sizeY, 32000,
+											  FixedPointPheromoneField.roundStochastic );
+			run( f, g, "fixed point" );
+		}
+		Check.done();
+	}
+
+	static void run ( PheromoneField f, int g, String name ) {
+		f.setGhostWidth( g );
+		int bad = 0, refreshes = 0;
+		for ( int i = 0; i < steps; ++i ) {
+			// move the source now and then, and let it die away for a while
+			int x = ( i / 50 ) * 13 % sizeX, y = ( i / 50 ) * 7 % sizeY;
+			if ( i % 50 < 25 ) {
+				f.putValueAt( x, y, 1000.0 + f.getValueAt( x, y ) );
+				f.update();
+			}
+			f.diffuse();
+			f.refreshGhosts();
+			f.refreshGhosts();		// nothing changed, so does nothing
+			bad += mismatches( f, g );
+			++refreshes;
+		}
+		Check.that( bad == 0, "%s, ghost width %d: %d cells wrong in %d refreshes",
+					name, g, bad, refreshes );
+	}
+
+	static int mismatches ( PheromoneField f, int g ) {
+		double[] ghosts = f.getGhostCells();
+		char[] fixed = f.getGhostFixed();
+		int bad = 0;
+		for ( int y = -g; y < sizeY + g; ++y ) {
+			for ( int x = -g; x < sizeX + g; ++x ) {
+				int i = f.ghostIndex( x, y );
+				double v = ghosts != null ? ghosts[i]
+					: fixed[i] / ( (FixedPointPheromoneField) f ).scale;
+				if ( v != f.getValueAt( x, y ) )
+					++bad;
+			}
+		}
+		return bad;
+	}
+
+}
@@ -0,0 +1,37 @@
+#!/bin/sh
+# compile the model and the tests, and run each test, eg
+#    test/run-tests.sh /users/rlr/Courses/cscs530.jar
+# The argument is the classpath of the libraries the model is built
+# with (Repast, Colt, commons-math -- cscs530.jar has them all).
+# Diffuse2DTest only checks agreement with Diffuse2D if that is loaded
+# from a jar (the Repast one, it assumes).
+# If the JDK has the jdk.incubator.vector module, src-vector is compiled
+# in too, so the Vector API kernel is tested.
+# Prints a line per check, and exits non-zero if any test fails.
+
+LIBS=${1:-$CSCS530LIBDIR/cscs530.jar}
+TESTDIR=$(cd $(dirname $0) && pwd)
+PROJECTDIR=$(dirname $TESTDIR)
+OUT=${TMPDIR:-/tmp}/AntPheromones-tests.$$
+
+VECTOR=
+VECTORSRC=
+if java --list-modules 2>/dev/null | grep -q jdk.incubator.vector
+then
+	VECTOR="--add-modules jdk.incubator.vector"
+	VECTORSRC="$PROJECTDIR/src-vector/AntPheromones/*.java"
+fi
+
+mkdir -p $OUT
+javac $VECTOR -d $OUT -cp $LIBS \
+	$PROJECTDIR/src/AntPheromones/*.java $VECTORSRC $TESTDIR/AntPheromones/*.java || exit 1
+
+status=0
+for t in $TESTDIR/AntPheromones/*Test.java
+do
+	name=$(basename $t .java)
+	echo "== $name"
+	java $VECTOR -cp $OUT:$LIBS AntPheromones.$name || status=1
+done
+rm -rf $OUT
+exit $status